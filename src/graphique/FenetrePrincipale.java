@@ -108,8 +108,9 @@ public class FenetrePrincipale extends JFrame
 		msg.append(" - Entre : lance la partie.\n");
 		msg.append(" - Retour arrire : rinitialise la partie.\n");
 		msg.append(" - Pause : met la partie en pause ou reprend la partie mise en pause.\n");
+		msg.append(" - Ctrl+Z / Ctrl+Y : pendant la pause, revoit le plateau  l'apparition de la pice prcdente / suivante.\n");
 		msg.append(" - + : Augmente la difficult.\n");
-		msg.append(" - Barre d'espace : acclre la chute de la pice.\n");
+		msg.append(" - Barre d'espace : fait tomber directement la pice.\n");
 		msg.append(" - Flches gauche / droite : dplace la pice d'une case vers la gauche ou la droite.\n");
 		msg.append(" - Flches haut / bas : effectue une rotation antihoraire / horaire de la pice.");
 		
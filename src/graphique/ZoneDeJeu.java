@@ -2,10 +2,8 @@ package graphique;
 
 import graphique.texture.TextureReader;
 
-import java.awt.Color;
-import java.awt.Point;
 import java.io.IOException;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.media.opengl.DebugGL;
 import javax.media.opengl.GL;
@@ -16,6 +14,8 @@ import javax.media.opengl.GLEventListener;
 import javax.media.opengl.glu.GLU;
 
 
+import moteur.FilePieces;
+import moteur.Instantane;
 import moteur.Piece;
 import moteur.Plateau;
 import moteur.Puyo;
@@ -36,14 +36,18 @@ public class ZoneDeJeu extends GLCanvas implements GLEventListener
     private GLU glu;
     /** Permet d'effectuer la boucle principale d'affichage */
     private FPSAnimator animator;
-    /** Le plateau actuellement affich */
-    private Plateau plateau;
-    /** Les deux prochaines pices */
-    private Piece[] piecesSuivantes;
-    /** Indique si une mise  jour du plateau est ncessaire */
-    private boolean majNecessairePlateau;
-    /** Indique si une mise  jour de l'affichage des pices suivantes est ncessaire */
-    private boolean majNecessairePiecesSuivantes;
+    /** Le dernier instantan du plateau publi par le moteur */
+    private final AtomicReference<Instantane> instantane;
+    /** L'instantan du plateau actuellement affich */
+    private Instantane instantaneAffiche;
+    /** Le nombre de pices suivantes affiches */
+    private static final int NB_PIECES_SUIVANTES = 2;
+    /** La file des pices suivantes de la partie affiche */
+    private final AtomicReference<FilePieces> piecesSuivantes;
+    /** La file dont les pices suivantes sont actuellement affiches */
+    private FilePieces piecesSuivantesAffichees;
+    /** La version de la file au moment o ses pices suivantes ont t affiches */
+    private long versionAffichee;
     /** La display-list correspondant  un puyo */
     private int listePuyo;
     /** La display-list correspondant au plateau dans son ensemble */
@@ -95,8 +99,11 @@ public class ZoneDeJeu extends GLCanvas implements GLEventListener
 		
 		this.addGLEventListener(this);
 		
-		majNecessairePlateau = false;
-		majNecessairePiecesSuivantes = false;
+		instantane = new AtomicReference<Instantane>();
+		instantaneAffiche = null;
+		piecesSuivantes = new AtomicReference<FilePieces>();
+		piecesSuivantesAffichees = null;
+		versionAffichee = 0;
 	}
 	
 	/**
@@ -329,10 +336,12 @@ public class ZoneDeJeu extends GLCanvas implements GLEventListener
 	    gl.glEnd();
 	    gl.glDisable(GL.GL_TEXTURE_2D);
 		
-		if (majNecessairePlateau) // Si la mise  jour est ncessaire
-			faireListePlateau(gl); // on reconstruit la display-list du plateau
-		if (majNecessairePiecesSuivantes) // Si la mise  jour est ncessaire
-			faireListePiecesSuivantes(gl); // on reconstruit la display-list de l'affichage des pices suivantes
+		Instantane publie = instantane.get();
+		if (publie != instantaneAffiche) // Si un nouvel instantan a t publi
+			faireListePlateau(gl, publie); // on reconstruit la display-list du plateau
+		FilePieces suivantes = piecesSuivantes.get();
+		if (suivantes != null && (suivantes != piecesSuivantesAffichees || suivantes.getVersion() != versionAffichee)) // Si la file a avanc
+			faireListePiecesSuivantes(gl, suivantes); // on reconstruit la display-list de l'affichage des pices suivantes
 		
 		// On affiche les pices suivantes et le plateau
 		gl.glCallList(listePiecesSuivantes);
@@ -381,48 +390,51 @@ public class ZoneDeJeu extends GLCanvas implements GLEventListener
 	}
 	
 	/**
-	 * Charge un plateau et indique que l'affichage du plateau
-	 * ncessite une mise  jour.
-	 * @param plateau le plateau  charger.
+	 * Publie un nouvel instantan du plateau, qui sera affich lors du
+	 * prochain rafrachissement. Peut tre appele depuis n'importe quel
+	 * thread : l'instantan n'tant pas modifiable, l'affichage est toujours
+	 * cohrent.
+	 * @param plateau l'instantan du plateau  afficher.
 	 */
-	public void chargerPlateau(Plateau plateau)
+	public void chargerPlateau(Instantane plateau)
 	{
-		this.plateau = plateau;
-		majNecessairePlateau = true;
+		instantane.set(plateau);
 	}
 	
 	/**
-	 * Cre une display-list correspondant au plateau actuellement stock
-	 * et indique que l'affichage du plateau n'a plus besoin d'tre redessin.
+	 * Cre une display-list correspondant  l'instantan fourni et le
+	 * retient comme instantan affich.
 	 * @param gl le contexte OpenGL.
+	 * @param plateau l'instantan du plateau  afficher.
 	 */
-	private void faireListePlateau(GL gl)
+	private void faireListePlateau(GL gl, Instantane plateau)
 	{
-		majNecessairePlateau = false;
-		Color couleur;
-		int cx, cy = 400;
+		instantaneAffiche = plateau;
+		float[] couleur;
+		int liens, cx, cy = 400;
 		
 		gl.glNewList(listePlateau, GL.GL_COMPILE);
 			gl.glPushMatrix();
 				gl.glTranslatef(293, 4, 0);
-				for (int i=3; i<Plateau.HAUTEUR; i++)
+				for (int i=Plateau.LIGNES_CACHEES; i<plateau.getHauteur(); i++)
 				{
 					cx = 20;
 					
-					for (int j=0; j<Plateau.LARGEUR; j++)
+					for (int j=0; j<plateau.getLargeur(); j++)
 					{
 						if (!plateau.estLibre(i, j))
 						{
-							couleur = plateau.getCouleurPuyo(i, j);
+							couleur = Puyo.getComposantes(plateau.getIndiceCouleurPuyo(i, j));
+							liens = plateau.getLiens(i, j);
 							
 							gl.glPushMatrix();
 								// Affichage du puyo
-								gl.glColor3f(couleur.getRed()/255, couleur.getGreen()/255, couleur.getBlue()/255);
+								gl.glColor3fv(couleur, 0);
 								gl.glTranslated(cx, cy, 0);
 								gl.glCallList(listePuyo);
 								
 								// Affichage des liens
-								if(plateau.getPuyo(i, j).getLien(Puyo.HAUT))
+								if((liens & (1 << Puyo.HAUT)) != 0)
 								{
 									gl.glPushMatrix();
 										gl.glTranslated(0, 35/2, 0);
@@ -430,7 +442,7 @@ public class ZoneDeJeu extends GLCanvas implements GLEventListener
 										gl.glCallList(listePuyo);
 									gl.glPopMatrix();
 								}
-								if(plateau.getPuyo(i, j).getLien(Puyo.DROITE))
+								if((liens & (1 << Puyo.DROITE)) != 0)
 								{
 									gl.glPushMatrix();
 										gl.glTranslated(35/2, 0, 0);
@@ -451,47 +463,74 @@ public class ZoneDeJeu extends GLCanvas implements GLEventListener
 	}
 	
 	/**
-	 * Charge les deux prochaines pices et indique que l'affichage des pices
-	 * suivantes ncessite une mise  jour.
-	 * @param piecesSuivantes le tableau contenant les pices suivantes.
+	 * Charge la file des pices suivantes de la partie, dont les deux
+	 * prochaines pices seront affiches lors du prochain rafrachissement.
+	 * Peut tre appele depuis n'importe quel thread : la file est lue sans
+	 * verrou ni copie et chaque avance de la file est dtecte  l'aide de
+	 * son numro de version.
+	 * @param piecesSuivantes la file contenant les pices suivantes.
 	 */
-	public void chargerPiecesSuivantes(Piece[] piecesSuivantes)
+	public void chargerPiecesSuivantes(FilePieces piecesSuivantes)
 	{
-		this.piecesSuivantes = piecesSuivantes;
-		majNecessairePiecesSuivantes = true;
+		this.piecesSuivantes.set(piecesSuivantes);
 	}
 	
 	/**
-	 * Cre une display-list correspondant aux pices suivantes actuellement
-	 * stockes et indique que l'affichage des pices suivantes n'a plus 
-	 * besoin d'tre redessin.
+	 * Cre une display-list correspondant aux deux prochaines pices de la
+	 * file fournie et retient la version de la file affiche. Si la file
+	 * avance pendant la lecture, la display-list est reconstruite ; si elle
+	 * est en train d'avancer, l'ancienne display-list est conserve jusqu'au
+	 * prochain rafrachissement.
 	 * @param gl le contexte OpenGL.
+	 * @param suivantes la file des pices suivantes  afficher.
 	 */
-	private void faireListePiecesSuivantes(GL gl)
+	private void faireListePiecesSuivantes(GL gl, FilePieces suivantes)
 	{
-		majNecessairePiecesSuivantes = false;
-		Color couleur;
-		Point position;
+		int nbPieces = Math.min(NB_PIECES_SUIVANTES, suivantes.getProfondeur());
+		long version;
+		
+		do
+		{
+			version = suivantes.getVersion();
+			if ((version & 1) != 0) // La file est en train d'avancer
+				return;
+			
+			faireListePiecesSuivantes(gl, suivantes, nbPieces);
+		} while (suivantes.getVersion() != version); // La file a avanc pendant la lecture
+		
+		piecesSuivantesAffichees = suivantes;
+		versionAffichee = version;
+	}
+	
+	/**
+	 * Cre une display-list correspondant aux premires pices de la file
+	 * fournie, lues  l'aide de ses accesseurs.
+	 * @param gl le contexte OpenGL.
+	 * @param suivantes la file des pices suivantes  afficher.
+	 * @param nbPieces le nombre de pices affiches.
+	 */
+	private void faireListePiecesSuivantes(GL gl, FilePieces suivantes, int nbPieces)
+	{
+		float[] couleur;
 		//int cx, cy = 400;
 		
 		gl.glNewList(listePiecesSuivantes, GL.GL_COMPILE);
 			gl.glPushMatrix();
 				gl.glTranslated(570+15, 459+15, 0);
 				
-				for (Piece piece : piecesSuivantes)
+				for (int k=0; k<nbPieces; k++)
 				{
 					gl.glPushMatrix();
-						if (piece.getForme() != Piece.COUDE)
+						if (suivantes.getForme(k) != Piece.COUDE)
 							gl.glTranslated(18, 0, 0);
 						// Affichage des puyos composant la pice
-						for (Map.Entry<Puyo, Point> paire : piece.entrySet())
+						for (int s=0; s<suivantes.getNbPuyos(k); s++)
 						{
-							couleur = paire.getKey().getCouleur();
-							position = paire.getValue();
+							couleur = Puyo.getComposantes(suivantes.getIndiceCouleur(k, s));
 							
 							gl.glPushMatrix();
-								gl.glColor3f(couleur.getRed()/255, couleur.getGreen()/255, couleur.getBlue()/255);
-								gl.glTranslated((position.y - 2) * 35, (2 - position.x) * 35, 0);
+								gl.glColor3fv(couleur, 0);
+								gl.glTranslated((suivantes.getColonne(k, s) - 2) * 35, (2 - suivantes.getLigne(k, s)) * 35, 0);
 								gl.glCallList(listePuyo);
 							gl.glPopMatrix();
 						}
@@ -0,0 +1,215 @@
+package moteur;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classe implmentant un battement rgulier dont la priode peut varier :
+ * la tche fournie est excute  chaque battement par un planificateur
+ * partag, sans qu'aucun thread ni timer ne soit cr lors du dmarrage,
+ * de l'arrt ou d'un changement de priode.
+ * Chaque battement est planifi pour une chance absolue, calcule 
+ * partir de l'chance prcdente et non de l'heure  laquelle la tche
+ * s'est termine : les retards ne s'accumulent donc pas d'un battement 
+ * l'autre. Si la tche dure plus d'une priode, les battements manqus ne
+ * sont pas rattraps et le battement suivant a lieu une priode plus tard.
+ * La tche peut demander que le battement suivant ait lieu aprs un autre
+ * dlai que la priode (voir setDelaiSuivant) : une tche en plusieurs
+ * tapes espaces est ainsi dcoupe en battements, sans jamais endormir
+ * un thread du planificateur.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class Cadenceur
+{
+	/** Le planificateur excutant les battements */
+	private final ScheduledExecutorService planificateur;
+	/** La tche excute  chaque battement */
+	private final Runnable tache;
+	/** La priode en nanosecondes */
+	private long periode;
+	/** Le dlai en nanosecondes sparant le battement en cours du suivant, ngatif pour une priode */
+	private long delaiSuivant;
+	/** L'chance du prochain battement, en nanosecondes (voir System.nanoTime) */
+	private long echeance;
+	/** Le numro de la squence de battements en cours, incrment  chaque dmarrage ou arrt */
+	private long generation;
+	/** Le prochain battement planifi, null si le cadenceur est arrt */
+	private ScheduledFuture<?> prochain;
+	
+	/**
+	 * Classe reprsentant un battement planifi, qui ne s'excute que s'il
+	 * appartient toujours  la squence de battements en cours.
+	 * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+	 *
+	 */
+	private class Battement implements Runnable
+	{
+		/** La squence de battements  laquelle appartient ce battement */
+		private final long generation;
+		
+		/**
+		 * Cre un nouveau battement appartenant  la squence indique.
+		 * @param generation le numro de la squence de battements.
+		 */
+		public Battement(long generation)
+		{
+			this.generation = generation;
+		}
+		
+		/**
+		 * Mthode lance par le planificateur  l'chance du battement.
+		 */
+		public void run()
+		{
+			battre(generation);
+		}
+	}
+	
+	/**
+	 * Cre un nouveau cadenceur arrt excutant la tche fournie  l'aide
+	 * du planificateur indiqu, qui peut tre partag avec d'autres cadenceurs.
+	 * @param planificateur le planificateur excutant les battements.
+	 * @param tache la tche  excuter  chaque battement.
+	 * @param periode la priode initiale en millisecondes.
+	 * @throws IllegalArgumentException si la priode n'est pas strictement positive.
+	 */
+	public Cadenceur(ScheduledExecutorService planificateur, Runnable tache, long periode)
+	{
+		this.planificateur = planificateur;
+		this.tache = tache;
+		setPeriode(periode);
+		delaiSuivant = -1;
+		generation = 0;
+		prochain = null;
+	}
+	
+	/**
+	 * Permet de modifier la priode des battements, sans arrter le
+	 * cadenceur : la nouvelle priode s'applique  partir du battement
+	 * suivant le prochain battement dj planifi.
+	 * @param periode la nouvelle priode en millisecondes.
+	 * @throws IllegalArgumentException si la priode n'est pas strictement positive.
+	 */
+	public synchronized void setPeriode(long periode)
+	{
+		if (periode <= 0)
+			throw new IllegalArgumentException("Priode invalide : " + periode);
+		
+		this.periode = TimeUnit.MILLISECONDS.toNanos(periode);
+	}
+	
+	/**
+	 * Permet d'indiquer que le prochain battement planifi aura lieu aprs
+	 * le dlai indiqu plutt qu'aprs une priode. Appele par la tche
+	 * pendant un battement, cette mthode fixe donc le dlai sparant ce
+	 * battement du suivant ; les battements d'aprs reprennent la priode.
+	 * @param delai le dlai en millisecondes.
+	 * @throws IllegalArgumentException si le dlai est ngatif.
+	 */
+	public synchronized void setDelaiSuivant(long delai)
+	{
+		if (delai < 0)
+			throw new IllegalArgumentException("Dlai invalide : " + delai);
+		
+		delaiSuivant = TimeUnit.MILLISECONDS.toNanos(delai);
+	}
+	
+	/**
+	 * Retourne la priode actuelle des battements.
+	 * @return la priode en millisecondes.
+	 */
+	public synchronized long getPeriode()
+	{
+		return TimeUnit.NANOSECONDS.toMillis(periode);
+	}
+	
+	/**
+	 * Permet de dmarrer (ou de redmarrer) les battements, le premier
+	 * ayant lieu aprs le dlai indiqu. Les battements d'une squence
+	 * prcdente qui n'ont pas encore eu lieu sont abandonns.
+	 * @param delai le dlai avant le premier battement en millisecondes.
+	 */
+	public synchronized void demarrer(long delai)
+	{
+		arreter();
+		delaiSuivant = -1;
+		echeance = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delai);
+		planifier();
+	}
+	
+	/**
+	 * Permet d'arrter les battements. Un battement en cours d'excution
+	 * se termine normalement mais n'est suivi d'aucun autre. Cette mthode
+	 * peut tre appele par la tche elle-mme.
+	 */
+	public synchronized void arreter()
+	{
+		generation++;
+		
+		if (prochain != null)
+		{
+			prochain.cancel(false);
+			prochain = null;
+		}
+	}
+	
+	/**
+	 * Retourne vrai si les battements sont dmarrs.
+	 * @return un boolen indiquant si le cadenceur est dmarr.
+	 */
+	public synchronized boolean estDemarre()
+	{
+		return prochain != null;
+	}
+	
+	/**
+	 * Permet de planifier le prochain battement de la squence en cours 
+	 * son chance.
+	 */
+	private void planifier()
+	{
+		prochain = planificateur.schedule(new Battement(generation), echeance - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Permet d'excuter un battement de la squence indique puis de
+	 * planifier le suivant, si la squence n'a pas t interrompue entre-temps.
+	 * @param sequence le numro de la squence du battement.
+	 */
+	private void battre(long sequence)
+	{
+		long maintenant, intervalle;
+		
+		synchronized (this)
+		{
+			if (sequence != generation) // Le cadenceur a t arrt ou redmarr depuis la planification
+				return;
+		}
+		
+		try
+		{
+			tache.run();
+		} catch (RuntimeException e)
+		{ // Mme si la tche choue, les battements continuent.
+			e.printStackTrace();
+		}
+		
+		synchronized (this)
+		{
+			if (sequence == generation)
+			{
+				maintenant = System.nanoTime();
+				intervalle = delaiSuivant < 0 ? periode : delaiSuivant;
+				delaiSuivant = -1;
+				echeance += intervalle;
+				
+				if (echeance - maintenant < 0) // La tche a dur plus que l'intervalle, on ne rattrape pas le retard.
+					echeance = maintenant + intervalle;
+				
+				planifier();
+			}
+		}
+	}
+}
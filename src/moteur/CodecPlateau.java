@@ -0,0 +1,353 @@
+package moteur;
+
+/**
+ * Classe regroupant les reprsentations d'un plateau de jeu permettant de
+ * le stocker, de le comparer ou de le transmettre.
+ * La reprsentation binaire contient le plateau et sa pice courante et a
+ * une taille fixe pour des dimensions de plateau donnes (voir getTaille) :
+ * - 2 octets pour les dimensions (la largeur, puis la hauteur diminue de 1) ;
+ * - 4 bits par case, ligne par ligne et deux cases par octet (la case de
+ *   plus petite colonne dans les bits de poids faible), contenant 0 pour
+ *   une case vide ou l'indice de la couleur du puyo augment de 1, le bit
+ *   de poids fort indiquant un puyo de la pice en chute ;
+ * - 2 octets dcrivant la pice : prsence (bit 0), forme (bits 1-2),
+ *   orientation (bits 3-4), pice casse (bit 5) et nombre de puyos
+ *   (bits 6-7), puis emplacement du pivot (bits 0-1, 3 si le pivot n'est
+ *   plus dans la pice) et couleur du pivot (bits 2-3) ;
+ * - 3 octets pour chacun des NB_MAX_PUYOS emplacements de la pice :
+ *   emplacement d'origine (bits 0-1) et couleur (bits 2-3), puis ligne et
+ *   colonne, les emplacements inutiliss tant nuls.
+ * La reprsentation texte canonique contient les dimensions sous la forme
+ * "largeurxhauteur" sur la premire ligne, puis chaque ligne du plateau,
+ * lignes caches comprises,  raison d'un caractre par case : '.' pour une
+ * case vide, 'M' (magenta), 'R' (rouge), 'V' (vert) ou 'N' (noir) pour un
+ * puyo pos et la mme lettre en minuscule pour un puyo de la pice en chute.
+ * Les lignes sont spares par '\n' et le texte se termine par une fin de
+ * ligne. Elle sert notamment  dcrire des plateaux dans des fichiers.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class CodecPlateau
+{
+	/** La taille en octets de l'entte contenant les dimensions du plateau */
+	private static final int TAILLE_ENTETE = 2;
+	/** La taille en octets de la description d'un emplacement de la pice */
+	private static final int TAILLE_EMPLACEMENT = 3;
+	/** La taille en octets de la description de la pice */
+	private static final int TAILLE_PIECE = 2 + Piece.NB_MAX_PUYOS * TAILLE_EMPLACEMENT;
+	/** L'emplacement du pivot indiquant qu'il n'appartient plus  la pice */
+	private static final int PIVOT_ABSENT = 3;
+	/** Le caractre reprsentant une case vide */
+	private static final char CASE_VIDE = '.';
+	/** Les caractres reprsentant chaque couleur de puyo */
+	private static final String LETTRES = "MRVN";
+	
+	/**
+	 * Retourne la taille en octets de la reprsentation binaire d'un
+	 * plateau de largeur colonnes sur hauteur lignes et de sa pice.
+	 * @param largeur le nombre de colonnes du plateau.
+	 * @param hauteur le nombre de lignes du plateau.
+	 * @return la taille de la reprsentation binaire.
+	 */
+	public static int getTaille(int largeur, int hauteur)
+	{
+		return TAILLE_ENTETE + (largeur * hauteur + 1) / 2 + TAILLE_PIECE;
+	}
+	
+	/**
+	 * Retourne la reprsentation binaire du plateau et de la pice fournis.
+	 * @param plateau le plateau  encoder.
+	 * @param piece la pice courante du plateau ou null s'il n'y en a pas.
+	 * @return un tableau de getTaille(largeur, hauteur) octets.
+	 */
+	public static byte[] encoder(Plateau plateau, Piece piece)
+	{
+		byte[] tampon = new byte[getTaille(plateau.getLargeur(), plateau.getHauteur())];
+		
+		encoder(plateau, piece, tampon, 0);
+		
+		return tampon;
+	}
+	
+	/**
+	 * Permet d'crire la reprsentation binaire du plateau et de la pice
+	 * fournis dans le tampon  partir de la position indique, sans
+	 * allocation.
+	 * @param plateau le plateau  encoder.
+	 * @param piece la pice courante du plateau ou null s'il n'y en a pas.
+	 * @param tampon le tableau dans lequel crire.
+	 * @param position la position du premier octet  crire.
+	 * @return la position suivant le dernier octet crit.
+	 * @throws IllegalArgumentException si le tampon est trop petit.
+	 */
+	public static int encoder(Plateau plateau, Piece piece, byte[] tampon, int position)
+	{
+		int largeur = plateau.getLargeur(), hauteur = plateau.getHauteur(), n = 0, s, p;
+		
+		verifierTaille(tampon, position, largeur, hauteur);
+		
+		tampon[position++] = (byte) largeur;
+		tampon[position++] = (byte) (hauteur - 1);
+		
+		for (int i=0; i<hauteur; i++)
+		{
+			for (int j=0; j<largeur; j++, n++)
+			{
+				if ((n & 1) == 0)
+					tampon[position] = (byte) plateau.lireCase(i, j);
+				else
+					tampon[position++] |= (byte) (plateau.lireCase(i, j) << 4);
+			}
+		}
+		if ((n & 1) != 0)
+			position++;
+		
+		if (piece == null)
+		{
+			for (n=0; n<TAILLE_PIECE; n++)
+				tampon[position++] = 0;
+		}
+		else
+		{
+			p = piece.getEmplacementPivot();
+			tampon[position++] = (byte) (1 | piece.getForme() << 1 | piece.getOrientation() << 3
+					| (piece.estCassee() ? 1 << 5 : 0) | piece.getNbPuyos() << 6);
+			tampon[position++] = (byte) ((p < 0 ? PIVOT_ABSENT : p) | piece.getPivot().getIndiceCouleur() << 2);
+			
+			for (s=0; s<Piece.NB_MAX_PUYOS; s++)
+			{
+				if (s < piece.getNbPuyos())
+				{
+					tampon[position++] = (byte) (piece.getOrigine(s) | piece.getPuyo(s).getIndiceCouleur() << 2);
+					tampon[position++] = (byte) piece.getLigne(s);
+					tampon[position++] = (byte) piece.getColonne(s);
+				}
+				else
+				{
+					for (n=0; n<TAILLE_EMPLACEMENT; n++)
+						tampon[position++] = 0;
+				}
+			}
+		}
+		
+		return position;
+	}
+	
+	/**
+	 * Retourne le plateau dcrit par la reprsentation binaire commenant 
+	 * la position indique du tampon. Le plateau obtenu est dans le mme tat
+	 * que le plateau encod (mme contenu, mme empreinte), ses puyos poss
+	 * tant tous vrifis lors de la prochaine destruction de blocs.
+	 * @param tampon le tableau contenant la reprsentation binaire.
+	 * @param position la position du premier octet de la reprsentation.
+	 * @return le plateau dcod.
+	 * @throws IllegalArgumentException si la reprsentation n'est pas valide.
+	 */
+	public static Plateau decoderPlateau(byte[] tampon, int position)
+	{
+		Plateau plateau = creerPlateau(tampon, position);
+		int largeur = plateau.getLargeur(), hauteur = plateau.getHauteur(), n = 0;
+		
+		verifierTaille(tampon, position, largeur, hauteur);
+		position += TAILLE_ENTETE;
+		
+		for (int i=0; i<hauteur; i++)
+		{
+			for (int j=0; j<largeur; j++, n++)
+			{
+				if ((n & 1) == 0)
+					plateau.remplirCase(i, j, tampon[position] & 0x0F);
+				else
+					plateau.remplirCase(i, j, (tampon[position++] >> 4) & 0x0F);
+			}
+		}
+		plateau.terminerReconstruction();
+		
+		return plateau;
+	}
+	
+	/**
+	 * Retourne la pice dcrite par la reprsentation binaire commenant 
+	 * la position indique du tampon ou null si aucune pice n'a t encode.
+	 * @param tampon le tableau contenant la reprsentation binaire.
+	 * @param position la position du premier octet de la reprsentation.
+	 * @return la pice dcode ou null.
+	 * @throws IllegalArgumentException si la reprsentation n'est pas valide.
+	 */
+	public static Piece decoderPiece(byte[] tampon, int position)
+	{
+		int largeur, hauteur, etat, nbPuyos, p, emplacement, ligne, colonne;
+		Piece piece;
+		Puyo puyo;
+		
+		verifierEntete(tampon, position);
+		largeur = tampon[position] & 0xFF;
+		hauteur = (tampon[position+1] & 0xFF) + 1;
+		verifierTaille(tampon, position, largeur, hauteur);
+		position += TAILLE_ENTETE + (largeur * hauteur + 1) / 2;
+		
+		etat = tampon[position++] & 0xFF;
+		if ((etat & 1) == 0)
+			return null;
+		
+		nbPuyos = etat >>> 6;
+		p = tampon[position] & 0x03;
+		if (((etat >>> 1) & 0x03) > Piece.COUDE || nbPuyos > Piece.NB_MAX_PUYOS || (p != PIVOT_ABSENT && p >= nbPuyos))
+			throw new IllegalArgumentException("Description de pice invalide");
+		
+		piece = new Piece((etat >>> 1) & 0x03, (etat >>> 3) & 0x03, (etat & (1 << 5)) != 0);
+		piece.setPivot(new Puyo((tampon[position++] >>> 2) & 0x03));
+		
+		for (int s=0; s<nbPuyos; s++)
+		{
+			emplacement = tampon[position++] & 0xFF;
+			ligne = tampon[position++] & 0xFF;
+			colonne = tampon[position++] & 0xFF;
+			
+			if (ligne >= hauteur || colonne >= largeur || (emplacement & 0x03) >= Piece.NB_MAX_PUYOS)
+				throw new IllegalArgumentException("Puyo de la pice invalide : " + s);
+			
+			puyo = (s == p) ? piece.getPivot() : new Puyo((emplacement >>> 2) & 0x03);
+			piece.ajouterPuyo(puyo, ligne, colonne, emplacement & 0x03);
+		}
+		
+		return piece;
+	}
+	
+	/**
+	 * Retourne la reprsentation texte canonique du plateau fourni. Deux
+	 * plateaux dans le mme tat ont la mme reprsentation.
+	 * @param plateau le plateau  reprsenter.
+	 * @return la reprsentation texte du plateau.
+	 */
+	public static String ecrireTexte(Plateau plateau)
+	{
+		int largeur = plateau.getLargeur(), hauteur = plateau.getHauteur(), valeur;
+		StringBuilder texte = new StringBuilder((largeur + 1) * (hauteur + 1) + 8);
+		char lettre;
+		
+		texte.append(largeur).append('x').append(hauteur).append('\n');
+		
+		for (int i=0; i<hauteur; i++)
+		{
+			for (int j=0; j<largeur; j++)
+			{
+				valeur = plateau.lireCase(i, j);
+				
+				if (valeur == 0)
+					texte.append(CASE_VIDE);
+				else
+				{
+					lettre = LETTRES.charAt((valeur & ~Plateau.CHUTE_CASE) - 1);
+					texte.append((valeur & Plateau.CHUTE_CASE) != 0 ? Character.toLowerCase(lettre) : lettre);
+				}
+			}
+			texte.append('\n');
+		}
+		
+		return texte.toString();
+	}
+	
+	/**
+	 * Retourne le plateau dcrit par la reprsentation texte fournie (voir
+	 * ecrireTexte). Les fins de ligne "\r\n" sont acceptes et les lignes
+	 * vides suivant le plateau sont ignores.
+	 * @param texte la reprsentation texte du plateau.
+	 * @return le plateau dcrit.
+	 * @throws IllegalArgumentException si le texte n'est pas valide.
+	 */
+	public static Plateau lireTexte(String texte)
+	{
+		String[] lignes = texte.split("\r?\n");
+		int largeur, hauteur, x, couleur;
+		Plateau plateau;
+		char c;
+		
+		x = lignes[0].indexOf('x');
+		try
+		{
+			largeur = Integer.parseInt(lignes[0].substring(0, Math.max(x, 0)));
+			hauteur = Integer.parseInt(lignes[0].substring(x + 1));
+		} catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Dimensions invalides : " + lignes[0]);
+		}
+		
+		plateau = new Plateau(largeur, hauteur);
+		
+		for (int n=hauteur+1; n<lignes.length; n++)
+		{
+			if (lignes[n].length() != 0)
+				throw new IllegalArgumentException("Ligne en trop : " + (n + 1));
+		}
+		if (lignes.length < hauteur + 1)
+			throw new IllegalArgumentException("Il manque des lignes : " + (hauteur + 1 - lignes.length));
+		
+		for (int i=0; i<hauteur; i++)
+		{
+			if (lignes[i+1].length() != largeur)
+				throw new IllegalArgumentException("Longueur de ligne invalide : " + (i + 2));
+			
+			for (int j=0; j<largeur; j++)
+			{
+				c = lignes[i+1].charAt(j);
+				
+				if (c == CASE_VIDE)
+					continue;
+				
+				couleur = LETTRES.indexOf(Character.toUpperCase(c));
+				if (couleur < 0)
+					throw new IllegalArgumentException("Caractre invalide ligne " + (i + 2) + " : " + c);
+				
+				plateau.remplirCase(i, j, (couleur + 1) | (Character.isLowerCase(c) ? Plateau.CHUTE_CASE : 0));
+			}
+		}
+		plateau.terminerReconstruction();
+		
+		return plateau;
+	}
+	
+	/**
+	 * Cre un plateau vide aux dimensions lues dans l'entte de la
+	 * reprsentation binaire commenant  la position indique.
+	 * @param tampon le tableau contenant la reprsentation binaire.
+	 * @param position la position du premier octet de la reprsentation.
+	 * @return le plateau cr.
+	 * @throws IllegalArgumentException si les dimensions ne sont pas valides.
+	 */
+	private static Plateau creerPlateau(byte[] tampon, int position)
+	{
+		verifierEntete(tampon, position);
+		
+		return new Plateau(tampon[position] & 0xFF, (tampon[position+1] & 0xFF) + 1);
+	}
+	
+	/**
+	 * Vrifie que le tampon contient l'entte d'une reprsentation binaire
+	 *  partir de la position indique.
+	 * @param tampon le tableau considr.
+	 * @param position la position du premier octet de la reprsentation.
+	 * @throws IllegalArgumentException si le tampon est trop petit.
+	 */
+	private static void verifierEntete(byte[] tampon, int position)
+	{
+		if (position < 0 || position + TAILLE_ENTETE > tampon.length)
+			throw new IllegalArgumentException("Tampon trop petit");
+	}
+	
+	/**
+	 * Vrifie que le tampon peut contenir la reprsentation binaire d'un
+	 * plateau de largeur colonnes sur hauteur lignes  partir de la position
+	 * indique.
+	 * @param tampon le tableau considr.
+	 * @param position la position du premier octet de la reprsentation.
+	 * @param largeur le nombre de colonnes du plateau.
+	 * @param hauteur le nombre de lignes du plateau.
+	 * @throws IllegalArgumentException si le tampon est trop petit.
+	 */
+	private static void verifierTaille(byte[] tampon, int position, int largeur, int hauteur)
+	{
+		if (position < 0 || position + getTaille(largeur, hauteur) > tampon.length)
+			throw new IllegalArgumentException("Tampon trop petit");
+	}
+}
@@ -6,8 +6,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.media.opengl.GLCapabilities;
 
@@ -19,117 +19,133 @@ import graphique.ZoneDeJeu;
  * la cohrence entre l'tat de la partie et l'affichage graphique correspondant.
  * Elle sert galement  traiter les actions utilisateur en coutant les vnements
  * claviers et  effectuer la boucle principale du jeu qui consiste  faire tomber
- * la pice.
+ * la pice. Les rgles du jeu sont appliques par le moteur de jeu (MoteurJeu),
+ * le contrleur se contentant de lui transmettre les actions du joueur et
+ * d'afficher le rsultat, la chute des pices tant cadence par une tche
+ * de chute (TacheChute) excute par le planificateur fourni. Les informations de jeu et les meilleurs
+ * scores sont mis  jour par un observateur qui lit les vnements publis par
+ * le moteur dans son propre thread, sans retarder la chute des pices.
  * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
  *
  */
 public class ControleurJeu extends KeyAdapter
 {
-	/** La partie en cours */
-	private Partie partie;
+	/** La partie en cours, remplace par la tche de chute lorsqu'elle est perdue */
+	private volatile Partie partie;
 	/** La fentre principale du jeu */
 	private FenetrePrincipale fenetrePrincipale;
 	/** La zone de jeu */
 	private ZoneDeJeu zoneDeJeu;
-	/** Le timer permettant de grer la chute des pices dans le plateau */
-	private Timer timerChute;
+	/** La tche permettant de grer la chute des pices dans le plateau */
+	private TacheChute tacheChute;
+	/** Le moteur de jeu faisant progresser la partie */
+	private MoteurJeu moteur;
+	/** L'historique des plateaux de la partie en cours  l'apparition de chaque pice, protg par le verrou du moteur */
+	private Historique historique;
 	
 	/**
-	 * Classe implmentant l'action du timer, c'est  dire la chute
-	 * des pices. Cette classe est utilise par le timer.
+	 * Classe implmentant l'observateur des parties : il lit les vnements
+	 * publis par le moteur de jeu pour mettre  jour les informations de
+	 * jeu affiches et vrifier les meilleurs scores  la fin d'une partie.
 	 * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
 	 *
 	 */
-	private class TimerChute extends TimerTask
+	private class ObservateurPartie extends Thread
 	{
-		/** Le score rapport par une tape de destruction de blocs */
+		/** Le dlai en millisecondes entre deux lectures des vnements */
+		private static final long PERIODE = 20;
+		/** Le lecteur des vnements du moteur */
+		private LecteurEvenements lecteur;
+		/** Le score de la partie observe */
 		private int score;
-		/** Le code de retour correspondant  l'opration de translation */
-		private int ret;
+		/** Le combo de la partie observe */
+		private int combo;
+		/** La difficult de la partie observe */
+		private int difficulte;
 		
 		/**
-		 * Cre un nouveau timer non lanc.
+		 * Cre un nouvel observateur non lanc, qui lira les vnements
+		 * publis aprs sa cration.
 		 */
-		public TimerChute()
+		public ObservateurPartie()
 		{
-			super();
+			super("Observateur");
+			setDaemon(true);
+			lecteur = moteur.getEvenements().creerLecteur();
 		}
 		
 		/**
-		 * Mthode lane par le timer aprs chaque priode d'attente
-		 * pour faire descendre la pice d'une case et effectue le
-		 * cycle de vrification permettant la dtection de la dfaite
-		 * et des blocs  dtruire.
+		 * Mthode lane au dmarrage du thread, qui traite les nouveaux
+		 * vnements publis par le moteur  chaque priode.
 		 */
 		public void run()
 		{
-			synchronized (partie.getPlateau()) // On verrouille le plateau pour tre sr de ne pas avoir d'accs concurrent.
+			while (true)
 			{
-				ret = partie.getPlateau().translationVerticale(partie.getPieceCourante());
+				while (lecteur.suivant())
+					traiter();
 				
-				if (ret == Plateau.PIECE_VIDE) // Si la pice ne peut plus descendre
-				{
-					zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone());
-					attente(200);
-					
-					while ((score = partie.getPlateau().detruireBlocs()) != 0) // Tant qu'on a dtruit un bloc au moins
-					{
-						partie.ajoutCombo(); // On augmente le compteur de combo
-						if (partie.ajoutScore(score)) // On ajoute le score
-						{ // si la difficult a t modifie par l'ajout du score, on l'applique.
-							timerChute.cancel();
-							timerChute = new Timer();
-							timerChute.schedule(new TimerChute(), 0, 500 - partie.getDifficulte()*50);
-						}
-						// On met  jour le plateau et les infos de jeu.
-						zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), false);
-						zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone());
-						attente(200);
-						partie.getPlateau().faireChuterPuyos(); // On applique la gravit.
-						zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone());
-						attente(200);
-					}
-					partie.resetCombo(); // On remet le compteur de combo  0.
-					// On met  jour le plateau et les infos de jeu.
-					zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), false);
-					zoneDeJeu.chargerPiecesSuivantes(partie.chargerPieceSuivante()); // On charge la pice suivante
-				}
-				else if(ret == Plateau.PERDU) // Si on a perdu
-				{
-					// On met  jour les infos de jeu.
-					zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), true);
-					timerChute.cancel(); // On arrte le jeu
-					
-					verifierMeilleursScores(partie.getScore()); // On vrifie les meilleurs scores.
-					
-					partie = new Partie(); // On prpare une nouvelle partie
+				try {
+					Thread.sleep(PERIODE);
+				} catch (InterruptedException e) {
+					return;
 				}
-				else
-					zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone()); // On met  jour l'affichage
 			}
 		}
 		
 		/**
-		 * Mthode permettant de faire attendre le timer pendant ms millisecondes.
-		 * @param ms le nombre de millisecondes  patienter.
+		 * Mthode permettant de traiter l'vnement courant du lecteur.
 		 */
-		private void attente(long ms)
+		private void traiter()
 		{
-			try {
-				Thread.sleep(ms);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+			switch (lecteur.getType())
+			{
+				case FileEvenements.PARTIE_COMMENCEE:
+					score = 0;
+					combo = 0;
+					difficulte = lecteur.getValeur();
+					break;
+				case FileEvenements.PIECE_APPARUE: // Le combo est remis  zro avant le chargement de la pice
+					combo = 0;
+					zoneDeJeu.chargerInfo(score, combo, difficulte, true, partie.estEnPause(), false);
+					break;
+				case FileEvenements.ENCHAINEMENT:
+					score = lecteur.getValeur();
+					combo = lecteur.getComplement();
+					zoneDeJeu.chargerInfo(score, combo, difficulte, true, partie.estEnPause(), false);
+					break;
+				case FileEvenements.DIFFICULTE_MODIFIEE:
+					difficulte = lecteur.getValeur();
+					zoneDeJeu.chargerInfo(score, combo, difficulte, true, partie.estEnPause(), false);
+					break;
+				case FileEvenements.PARTIE_TERMINEE:
+					score = lecteur.getValeur();
+					zoneDeJeu.chargerInfo(score, combo, difficulte, true, false, true);
+					verifierMeilleursScores(score); // On vrifie les meilleurs scores.
+					break;
 			}
 		}
-		
 	}
 	
 	/**
 	 * Cre un nouveau contrleur de jeu qui met en place
 	 * une interface graphique et la partie correspondante
-	 * et qui coute les vnements claviers.
+	 * et qui coute les vnements claviers. La chute des pices est
+	 * excute par un planificateur  un seul thread cr pour le contrleur.
 	 */
 	public ControleurJeu()
+	{
+		this(Executors.newSingleThreadScheduledExecutor());
+	}
+	
+	/**
+	 * Cre un nouveau contrleur de jeu qui met en place
+	 * une interface graphique et la partie correspondante
+	 * et qui coute les vnements claviers.
+	 * @param planificateur le planificateur excutant la chute des pices,
+	 * qui peut tre partag avec d'autres tches.
+	 */
+	public ControleurJeu(ScheduledExecutorService planificateur)
 	{
 		GLCapabilities capabilities = new GLCapabilities();
 		capabilities.setDoubleBuffered(true);
@@ -141,6 +157,25 @@ public class ControleurJeu extends KeyAdapter
 		fenetrePrincipale = new FenetrePrincipale("Puyo Puyo 2010", 800, 628, zoneDeJeu);
 		zoneDeJeu.addKeyListener(this);
 		
+		moteur = new MoteurJeu();
+		new ObservateurPartie().start();
+		tacheChute = new TacheChute(planificateur, moteur, new TacheChute.Affichage() {
+			public void chargerPlateau(Instantane plateau)
+			{
+				zoneDeJeu.chargerPlateau(plateau);
+			}
+			
+			public void chargerPiecesSuivantes(FilePieces piecesSuivantes)
+			{ // Appele avec le verrou du moteur,  l'apparition de chaque pice.
+				zoneDeJeu.chargerPiecesSuivantes(piecesSuivantes);
+				historique.enregistrer(partie.getPlateau());
+			}
+			
+			public void terminerPartie(Partie partie)
+			{
+				ControleurJeu.this.terminerPartie();
+			}
+		});
 		partie = new Partie();
 		zoneDeJeu.chargerPiecesSuivantes(partie.getPiecesSuivantes());
 		zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), false);
@@ -170,7 +205,7 @@ public class ControleurJeu extends KeyAdapter
 		{
 			if (partie.estEnCours() && !partie.estEnPause()) // On met la partie en pause si elle est en cours.
 			{
-				timerChute.cancel();
+				tacheChute.arreter();
 				partie.mettreEnPause();
 				zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(),partie.estEnPause(), false);
 			}
@@ -181,7 +216,7 @@ public class ControleurJeu extends KeyAdapter
 		{
 			if (partie.estEnCours() && !partie.estEnPause()) // On met la partie en pause si elle est en cours.
 			{
-				timerChute.cancel();
+				tacheChute.arreter();
 				partie.mettreEnPause();
 				zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(),partie.estEnPause(), false);
 			}
@@ -192,89 +227,118 @@ public class ControleurJeu extends KeyAdapter
 		{
 			if (e.getKeyCode() == KeyEvent.VK_ENTER) // Lancement de la partie
 			{
-				partie.commencerPartie();
-				zoneDeJeu.chargerPiecesSuivantes(partie.chargerPieceSuivante());
-				zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone());
+				synchronized (moteur)
+				{
+					moteur.commencer(partie);
+					historique = new Historique(partie.getPlateau());
+					zoneDeJeu.chargerPiecesSuivantes(partie.getPiecesSuivantes());
+				}
+				zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane());
 				zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), false);
 				
-				timerChute = new Timer();
-				timerChute.schedule(new TimerChute(), 500, 500);
+				tacheChute.demarrer(partie, 500);
 			}
 		}
 		else if (partie.estEnCours() && e.getKeyCode() == KeyEvent.VK_BACK_SPACE) // Commencer une nouvelle partie
 		{
-			timerChute.cancel();
+			tacheChute.arreter();
 			partie = new Partie();
-			zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone());
+			zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane());
 			zoneDeJeu.chargerPiecesSuivantes(partie.getPiecesSuivantes());
 			zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), false);
 		}
 		else if (partie.estEnCours() && (e.getKeyCode() == KeyEvent.VK_ADD || e.getKeyCode() == KeyEvent.VK_PLUS || (e.isShiftDown() && e.getKeyCode() == KeyEvent.VK_EQUALS))) // Augmente la difficult
 		{
-			if (partie.augmenterDifficulte() && !partie.estEnPause())
-			{ // On ne change le timer que si la difficult a t vraiment modifie et si la partie n'est pas actuellement en pause
-				timerChute.cancel();
-				timerChute = new Timer();
-				timerChute.schedule(new TimerChute(), 0, 500 - partie.getDifficulte()*50);
+			// La modification est publie par le moteur, qui ne garde son verrou que le temps d'une tape.
+			if (moteur.augmenterDifficulte(partie) && !partie.estEnPause())
+			{ // On ne change la priode que si la difficult a t vraiment modifie et si la partie n'est pas actuellement en pause
+				tacheChute.majPeriode();
 			}
-			zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), false);
 		}
 		else if (partie.estEnPause() && e.getKeyCode() == KeyEvent.VK_PAUSE) // Reprise d'une partie mise en pause
 		{
-			timerChute = new Timer();
-			timerChute.schedule(new TimerChute(), 0, 500 - partie.getDifficulte()*50);
-			partie.reprendrePartie();
+			synchronized (moteur) // On quitte l'historique pour revenir au plateau de la partie.
+			{
+				historique.allerA(historique.getNbEtats() - 1);
+				zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane());
+			}
+			partie.reprendrePartie(); // L'enchanement ventuellement interrompu reprend au premier battement.
+			tacheChute.demarrer(partie, 0);
 			zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(), partie.estEnPause(), false);
 		}
+		else if (partie.estEnPause() && e.isControlDown() && (e.getKeyCode() == KeyEvent.VK_Z || e.getKeyCode() == KeyEvent.VK_Y))
+		{ // Pendant la pause, on peut revoir le plateau  l'apparition des pices prcdentes.
+			synchronized (moteur)
+			{
+				if (e.getKeyCode() == KeyEvent.VK_Z && historique.peutAnnuler())
+					zoneDeJeu.chargerPlateau(historique.annuler());
+				else if (e.getKeyCode() == KeyEvent.VK_Y && historique.peutRetablir())
+					zoneDeJeu.chargerPlateau(historique.retablir());
+			}
+		}
 		else if (!partie.estEnPause() && e.getKeyCode() == KeyEvent.VK_PAUSE) // Mise en pause
 		{
-			timerChute.cancel();
+			tacheChute.arreter();
 			partie.mettreEnPause();
 			zoneDeJeu.chargerInfo(partie.getScore(), partie.getCombo(), partie.getDifficulte(), partie.estEnCours(),partie.estEnPause(), false);
 		}
-		else if (!partie.estEnPause() && !partie.getPieceCourante().estCassee())
-		{ // On ne peut effectuer les actions que si la partie n'est pas en pause et que la pice n'est pas casse.
+		else if (!partie.estEnPause() && partie.getPhase() == MoteurJeu.CHUTE && !partie.getPieceCourante().estCassee())
+		{ // On ne peut effectuer les actions que si la partie n'est pas en pause et que la pice tombe sans tre casse.
 			switch (e.getKeyCode())
 			{
 				case KeyEvent.VK_LEFT: // flche gauche --> translation de la pice vers la gauche
-					synchronized (partie.getPlateau()) // On verrouille le plateau pour tre sr de ne pas avoir d'accs concurrent.
+					synchronized (moteur) // On verrouille le moteur pour tre sr de ne pas avoir d'accs concurrent.
 					{
-						partie.getPlateau().translationHorizontale(Plateau.GAUCHE, partie.getPieceCourante());
-						zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone()); // On met  jour l'affichage
+						moteur.etape(partie, MoteurJeu.GAUCHE);
+						zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane()); // On met  jour l'affichage
 					}
 				break;
 				case KeyEvent.VK_RIGHT: // flche droite --> translation de la pice vers la droite
-					synchronized (partie.getPlateau()) // On verrouille le plateau pour tre sr de ne pas avoir d'accs concurrent.
+					synchronized (moteur) // On verrouille le moteur pour tre sr de ne pas avoir d'accs concurrent.
 					{
-						partie.getPlateau().translationHorizontale(Plateau.DROITE, partie.getPieceCourante());
-						zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone()); // On met  jour l'affichage
+						moteur.etape(partie, MoteurJeu.DROITE);
+						zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane()); // On met  jour l'affichage
 					}
 				break;
 				case KeyEvent.VK_DOWN: // flche bas --> rotation dans le sens horaire
-					synchronized (partie.getPlateau()) // On verrouille le plateau pour tre sr de ne pas avoir d'accs concurrent.
+					synchronized (moteur) // On verrouille le moteur pour tre sr de ne pas avoir d'accs concurrent.
 					{
-						partie.getPlateau().rotation(Plateau.HORAIRE, partie.getPieceCourante());
-						zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone()); // On met  jour l'affichage
+						moteur.etape(partie, MoteurJeu.HORAIRE);
+						zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane()); // On met  jour l'affichage
 					}
 				break;
 				case KeyEvent.VK_UP: // flche haut --> rotation dans le sens antihoraire
-					synchronized (partie.getPlateau()) // On verrouille le plateau pour tre sr de ne pas avoir d'accs concurrent.
+					synchronized (moteur) // On verrouille le moteur pour tre sr de ne pas avoir d'accs concurrent.
 					{
-						partie.getPlateau().rotation(Plateau.ANTIHORAIRE, partie.getPieceCourante());
-						zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone()); // On met  jour l'affichage
+						moteur.etape(partie, MoteurJeu.ANTIHORAIRE);
+						zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane()); // On met  jour l'affichage
 					}
 				break;
-				case KeyEvent.VK_SPACE: // espace --> acclrer la chute de la pice
-					synchronized (partie.getPlateau()) // On verrouille le plateau pour tre sr de ne pas avoir d'accs concurrent.
-					{
-						partie.getPlateau().translationVerticale(partie.getPieceCourante());
-						zoneDeJeu.chargerPlateau((Plateau) partie.getPlateau().clone()); // On met  jour l'affichage
+				case KeyEvent.VK_SPACE: // espace --> chute directe de la pice
+					synchronized (moteur) // On verrouille le moteur pour tre sr de ne pas avoir d'accs concurrent.
+					{ // La pice est pose d'un coup, la destruction des blocs sera effectue par la tche de chute.
+						if (moteur.etape(partie, MoteurJeu.CHUTE_RAPIDE).estPerdu())
+							terminerPartie();
+						else
+							zoneDeJeu.chargerPlateau(partie.getPlateau().getInstantane()); // On met  jour l'affichage
 					}
 				break;
 			}
 		}
 	}
 	
+	/**
+	 * Mthode permettant de terminer la partie en cours lorsque le joueur
+	 * a perdu : le jeu est arrt et une nouvelle partie est prpare. Les
+	 * infos de jeu et les meilleurs scores sont traits par l'observateur.
+	 */
+	private void terminerPartie()
+	{
+		tacheChute.arreter(); // On arrte le jeu
+		
+		partie = new Partie(); // On prpare une nouvelle partie
+	}
+	
 	/**
 	 * Mthode permettant de charger les meilleurs scores  partir du fichier
 	 * de sauvegarde des scores (PPMS.dat). Si le fichier n'existe pas, les
@@ -0,0 +1,170 @@
+package moteur;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Classe reprsentant la file des vnements publis par le moteur de jeu
+ * (pice apparue, pice pose, blocs dtruits, enchanement, difficult
+ * modifie, partie termine...) pour les classes qui les observent.
+ * La file est un tableau circulaire allou une fois pour toutes dans lequel
+ * chaque vnement est cod dans un seul entier long, sans aucun verrou :
+ * le moteur publie les vnements sans jamais attendre les observateurs et
+ * chaque observateur les lit  son rythme  l'aide de son propre lecteur
+ * (voir LecteurEvenements). Un observateur trop lent pour suivre perd les
+ * vnements les plus anciens, qui sont compts par son lecteur.
+ * Les vnements sont numrots  partir de 1 dans l'ordre de publication.
+ * Les publications doivent tre effectues par un seul thread  la fois :
+ * seul le moteur de jeu propritaire de la file publie, et il ne le fait
+ * qu'en dtenant son propre verrou (voir MoteurJeu), qui ne change pas
+ * d'une partie  l'autre.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class FileEvenements
+{
+	/** vnement indiquant le dbut d'une partie, la valeur tant la difficult initiale */
+	public static final int PARTIE_COMMENCEE = 0;
+	/** vnement indiquant l'apparition d'une nouvelle pice, la valeur tant sa forme */
+	public static final int PIECE_APPARUE = 1;
+	/** vnement indiquant que tous les puyos de la pice courante sont poss */
+	public static final int PIECE_POSEE = 2;
+	/** vnement indiquant la destruction de blocs, la valeur tant les points gagns et le complment le nombre de blocs */
+	public static final int BLOCS_DETRUITS = 3;
+	/** vnement indiquant une tape d'un enchanement, la valeur tant le score total et le complment le combo */
+	public static final int ENCHAINEMENT = 4;
+	/** vnement indiquant la modification de la difficult, la valeur tant la nouvelle difficult */
+	public static final int DIFFICULTE_MODIFIEE = 5;
+	/** vnement indiquant que la partie est perdue, la valeur tant le score final */
+	public static final int PARTIE_TERMINEE = 6;
+	/** La capacit par dfaut de la file */
+	public static final int CAPACITE = 1024;
+	/** Masque permettant d'extraire le complment d'un vnement cod */
+	private static final int MASQUE_COMPLEMENT = 0xFFFFFF;
+	/** Les vnements cods : le type, puis le complment sur 24 bits, puis la valeur sur 32 bits */
+	private final AtomicLongArray evenements;
+	/** Masque permettant d'obtenir l'emplacement d'un vnement  partir de son numro */
+	private final int masque;
+	/** Le numro du dernier vnement dont l'criture a commenc */
+	private volatile long reserve;
+	/** Le numro du dernier vnement publi */
+	private volatile long publie;
+	
+	/**
+	 * Cre une nouvelle file d'vnements vide de capacit par dfaut.
+	 */
+	public FileEvenements()
+	{
+		this(CAPACITE);
+	}
+	
+	/**
+	 * Cre une nouvelle file d'vnements vide de la capacit indique.
+	 * @param capacite le nombre d'vnements conservs, une puissance de 2.
+	 * @throws IllegalArgumentException si la capacit n'est pas une puissance de 2.
+	 */
+	public FileEvenements(int capacite)
+	{
+		if (capacite <= 0 || (capacite & (capacite - 1)) != 0)
+			throw new IllegalArgumentException("Capacit de file invalide : " + capacite);
+		
+		evenements = new AtomicLongArray(capacite);
+		masque = capacite - 1;
+		reserve = 0;
+		publie = 0;
+	}
+	
+	/**
+	 * Retourne le nombre d'vnements conservs par la file.
+	 * @return la capacit de la file.
+	 */
+	public int getCapacite()
+	{
+		return masque + 1;
+	}
+	
+	/**
+	 * Retourne le numro du dernier vnement publi, 0 si aucun vnement
+	 * n'a encore t publi.
+	 * @return le numro du dernier vnement publi.
+	 */
+	public long getNumeroPublie()
+	{
+		return publie;
+	}
+	
+	/**
+	 * Cre un nouveau lecteur qui lira les vnements publis aprs sa cration.
+	 * @return le nouveau lecteur.
+	 */
+	public LecteurEvenements creerLecteur()
+	{
+		return new LecteurEvenements(this, publie);
+	}
+	
+	/**
+	 * Permet de publier un nouvel vnement. L'emplacement qu'il occupe est
+	 * rserv avant d'tre crit pour que les lecteurs puissent dtecter
+	 * qu'un vnement qu'ils lisent a t remplac.
+	 * @param type le type de l'vnement.
+	 * @param valeur la valeur associe  l'vnement.
+	 * @param complement le complment associ  l'vnement (entre 0 et 2^24-1).
+	 */
+	void publier(int type, int valeur, int complement)
+	{
+		long numero = publie + 1;
+		
+		reserve = numero;
+		evenements.set((int) numero & masque, ((long) type << 56) | ((long) (complement & MASQUE_COMPLEMENT) << 32) | (valeur & 0xFFFFFFFFL));
+		publie = numero;
+	}
+	
+	/**
+	 * Retourne l'vnement cod occupant l'emplacement de l'vnement
+	 * numro n, qui peut avoir t remplac par un vnement plus rcent.
+	 * @param n le numro de l'vnement.
+	 * @return l'vnement cod.
+	 */
+	long lire(long n)
+	{
+		return evenements.get((int) n & masque);
+	}
+	
+	/**
+	 * Retourne le numro du dernier vnement dont l'criture a commenc.
+	 * @return le numro du dernier vnement rserv.
+	 */
+	long getNumeroReserve()
+	{
+		return reserve;
+	}
+	
+	/**
+	 * Retourne le type d'un vnement cod.
+	 * @param evenement l'vnement cod.
+	 * @return le type de l'vnement.
+	 */
+	static int getType(long evenement)
+	{
+		return (int) (evenement >>> 56);
+	}
+	
+	/**
+	 * Retourne la valeur d'un vnement cod.
+	 * @param evenement l'vnement cod.
+	 * @return la valeur de l'vnement.
+	 */
+	static int getValeur(long evenement)
+	{
+		return (int) evenement;
+	}
+	
+	/**
+	 * Retourne le complment d'un vnement cod.
+	 * @param evenement l'vnement cod.
+	 * @return le complment de l'vnement.
+	 */
+	static int getComplement(long evenement)
+	{
+		return (int) (evenement >>> 32) & MASQUE_COMPLEMENT;
+	}
+}
@@ -0,0 +1,244 @@
+package moteur;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Classe reprsentant la file des pices en attente d'une partie. La file
+ * contient toujours le mme nombre de pices (sa profondeur) :  chaque
+ * chargement d'une pice, la premire pice de la file est retire et une
+ * nouvelle pice est ajoute  la fin.
+ * Les pices sont stockes dans un tableau circulaire allou une fois pour
+ * toutes, faire avancer la file ou consulter une pice n'effectue donc
+ * aucune allocation. Seule la partie propritaire peut faire avancer la
+ * file, les autres classes n'y ont accs qu'en lecture.
+ * La forme de chaque pice et la couleur et la position de ses puyos sont
+ * codes dans un seul entier long au moment o la pice entre dans la file,
+ * les pices n'tant plus modifies tant qu'elles y restent. Les autres
+ * classes lisent ces descriptions  l'aide des accesseurs de la file, sans
+ * verrou ni copie, et vrifient  l'aide du numro de version que la file
+ * n'a pas avanc pendant leur lecture (voir getVersion).
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class FilePieces
+{
+	/** Le nombre de bits codant un puyo dans la description d'une pice */
+	private static final int BITS_PUYO = 16;
+	/** Le nombre de bits codant une coordonne d'un puyo */
+	private static final int BITS_COORDONNEE = 6;
+	/** Masque permettant d'extraire une coordonne */
+	private static final int MASQUE_COORDONNEE = (1 << BITS_COORDONNEE) - 1;
+	/** Le nombre de bits codant la forme, le nombre de puyos ou une couleur */
+	private static final int BITS_VALEUR = 4;
+	/** Masque permettant d'extraire la forme, le nombre de puyos ou une couleur */
+	private static final int MASQUE_VALEUR = (1 << BITS_VALEUR) - 1;
+	/** Position du premier puyo dans la description d'une pice */
+	private static final int DECALAGE_PUYOS = 8;
+	/** Les pices de la file */
+	private Piece[] pieces;
+	/** Les descriptions des pices de la file : la forme, le nombre de puyos puis la couleur, la ligne et la colonne de chaque puyo */
+	private final AtomicLongArray descriptions;
+	/** L'emplacement de la premire pice de la file dans le tableau */
+	private volatile int tete;
+	/** Le numro de version de la file, impair pendant qu'elle avance */
+	private volatile long version;
+	
+	/**
+	 * Cre une nouvelle file de pices de la profondeur indique, les pices
+	 * tant tires  l'aide du gnrateur fourni.
+	 * @param profondeur le nombre de pices en attente.
+	 * @param generateur le gnrateur utilis pour tirer les pices.
+	 */
+	FilePieces(int profondeur, Generateur generateur)
+	{
+		pieces = new Piece[profondeur];
+		descriptions = new AtomicLongArray(profondeur);
+		tete = 0;
+		version = 0;
+		
+		for (int k=0; k<profondeur; k++)
+		{
+			pieces[k] = new Piece(generateur);
+			descriptions.set(k, decrire(pieces[k]));
+		}
+	}
+	
+	/**
+	 * Retourne le nombre de pices en attente dans la file.
+	 * @return la profondeur de la file.
+	 */
+	public int getProfondeur()
+	{
+		return pieces.length;
+	}
+	
+	/**
+	 * Retourne le numro de version de la file, qui augmente de 2  chaque
+	 * fois qu'elle avance et est impair pendant qu'elle avance. Une lecture
+	 * de la file effectue sans le verrou du moteur de jeu est cohrente si
+	 * le numro tait pair avant la lecture et n'a pas chang aprs.
+	 * @return le numro de version de la file.
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * Retourne la forme de la pice se trouvant  la position k de la file.
+	 * @param k la position de la pice dans la file.
+	 * @return la forme de la pice (Piece.DOUBLE, Piece.TRIPLE ou Piece.COUDE).
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	public int getForme(int k)
+	{
+		return (int) getDescription(k) & MASQUE_VALEUR;
+	}
+	
+	/**
+	 * Retourne le nombre de puyos de la pice se trouvant  la position k de la file.
+	 * @param k la position de la pice dans la file.
+	 * @return le nombre de puyos de la pice.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	public int getNbPuyos(int k)
+	{
+		return (int) (getDescription(k) >>> BITS_VALEUR) & MASQUE_VALEUR;
+	}
+	
+	/**
+	 * Retourne l'indice de la couleur du puyo de l'emplacement s de la pice
+	 * se trouvant  la position k de la file.
+	 * @param k la position de la pice dans la file.
+	 * @param s l'emplacement du puyo dans la pice (entre 0 et getNbPuyos(k)-1).
+	 * @return l'indice de la couleur du puyo.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	public int getIndiceCouleur(int k, int s)
+	{
+		return (int) (getDescription(k) >>> (DECALAGE_PUYOS + s*BITS_PUYO)) & MASQUE_VALEUR;
+	}
+	
+	/**
+	 * Retourne la ligne du puyo de l'emplacement s de la pice se trouvant 
+	 * la position k de la file, telle qu'elle tait  l'entre de la pice
+	 * dans la file.
+	 * @param k la position de la pice dans la file.
+	 * @param s l'emplacement du puyo dans la pice (entre 0 et getNbPuyos(k)-1).
+	 * @return la ligne du puyo.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	public int getLigne(int k, int s)
+	{
+		return (int) (getDescription(k) >>> (DECALAGE_PUYOS + s*BITS_PUYO + BITS_VALEUR)) & MASQUE_COORDONNEE;
+	}
+	
+	/**
+	 * Retourne la colonne du puyo de l'emplacement s de la pice se trouvant
+	 *  la position k de la file, telle qu'elle tait  l'entre de la pice
+	 * dans la file.
+	 * @param k la position de la pice dans la file.
+	 * @param s l'emplacement du puyo dans la pice (entre 0 et getNbPuyos(k)-1).
+	 * @return la colonne du puyo.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	public int getColonne(int k, int s)
+	{
+		return (int) (getDescription(k) >>> (DECALAGE_PUYOS + s*BITS_PUYO + BITS_VALEUR + BITS_COORDONNEE)) & MASQUE_COORDONNEE;
+	}
+	
+	/**
+	 * Retourne la description de la pice se trouvant  la position k de la file.
+	 * @param k la position de la pice dans la file.
+	 * @return la description code de la pice.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	private long getDescription(int k)
+	{
+		return descriptions.get(emplacement(k));
+	}
+	
+	/**
+	 * Retourne la pice se trouvant  la position k de la file, la position
+	 * 0 correspondant  la prochaine pice  tre charge. La pice retourne
+	 * est celle de la file et non une copie, elle est rserve au moteur.
+	 * @param k la position de la pice dans la file.
+	 * @return la pice  la position k.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	Piece getPiece(int k)
+	{
+		return pieces[emplacement(k)];
+	}
+	
+	/**
+	 * Retourne l'emplacement dans le tableau de la pice se trouvant  la
+	 * position k de la file.
+	 * @param k la position de la pice dans la file.
+	 * @return l'emplacement de la pice.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans la file.
+	 */
+	private int emplacement(int k)
+	{
+		if (k < 0 || k >= pieces.length)
+			throw new IndexOutOfBoundsException("Position hors de la file : " + k);
+		
+		k += tete;
+		
+		return (k < pieces.length) ? k : k - pieces.length;
+	}
+	
+	/**
+	 * Permet de retirer la premire pice de la file et d'ajouter la pice
+	 * fournie  la fin de la file.
+	 * @param nouvelle la pice  ajouter  la fin de la file.
+	 * @return la pice retire.
+	 */
+	Piece avancer(Piece nouvelle)
+	{
+		Piece premiere = pieces[tete];
+		
+		version++; // Les lecteurs dtectent que la file avance
+		pieces[tete] = nouvelle; // La place libre devient la fin de la file
+		descriptions.set(tete, decrire(nouvelle));
+		tete = (tete + 1 < pieces.length) ? tete + 1 : 0;
+		version++;
+		
+		return premiere;
+	}
+	
+	/**
+	 * Retourne la description code de la pice fournie : sa forme, son
+	 * nombre de puyos puis, pour chaque puyo, sa couleur, sa ligne et sa
+	 * colonne (infrieures  64 pour une pice qui vient d'tre tire).
+	 * @param piece la pice  dcrire.
+	 * @return la description code de la pice.
+	 */
+	private static long decrire(Piece piece)
+	{
+		long description = piece.getForme() | (piece.getNbPuyos() << BITS_VALEUR);
+		
+		for (int s=0; s<piece.getNbPuyos(); s++)
+		{
+			description |= (long) (piece.getPuyo(s).getIndiceCouleur()
+					| (piece.getLigne(s) << BITS_VALEUR)
+					| (piece.getColonne(s) << (BITS_VALEUR + BITS_COORDONNEE))) << (DECALAGE_PUYOS + s*BITS_PUYO);
+		}
+		
+		return description;
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant la file.
+	 * @return une chaine de caractre reprsentant la file.
+	 */
+	public String toString()
+	{
+		StringBuilder s = new StringBuilder("File de pices :");
+		
+		for (int k=0; k<pieces.length; k++)
+			s.append("\n").append(getPiece(k));
+		
+		return s.toString();
+	}
+}
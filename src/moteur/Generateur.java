@@ -0,0 +1,117 @@
+package moteur;
+
+/**
+ * Classe reprsentant un gnrateur de nombres pseudo-alatoires utilis
+ * pour choisir la forme des pices et la couleur des puyos d'une partie.
+ * Chaque partie possde son propre gnrateur, initialis  partir d'une
+ * graine : une partie peut donc tre rejoue  l'identique  partir de sa
+ * graine et plusieurs parties simules en parallle ne partagent aucun tat.
+ * Le gnrateur suit l'algorithme SplitMix64 : son tat est un simple
+ * compteur incrment d'un pas constant impair  chaque tirage, la valeur tire tant
+ * obtenue en mlangeant les bits du compteur. Un gnrateur peut tre spar
+ * en un second gnrateur indpendant (voir separer).
+ * Un gnrateur n'est pas prvu pour tre partag entre plusieurs threads.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class Generateur
+{
+	/** Le pas utilis par dfaut, issu du nombre d'or */
+	private static final long PAS_OR = 0x9e3779b97f4a7c15L;
+	/** La graine ayant servi  initialiser le gnrateur */
+	private final long graine;
+	/** L'tat courant du gnrateur */
+	private long etat;
+	
+	/**
+	 * Cre un nouveau gnrateur initialis avec la graine fournie. Deux
+	 * gnrateurs crs avec la mme graine produisent la mme suite.
+	 * @param graine la graine du gnrateur.
+	 */
+	public Generateur(long graine)
+	{
+		this.graine = graine;
+		etat = graine;
+	}
+	
+	/**
+	 * Retourne la graine ayant servi  initialiser le gnrateur.
+	 * @return la graine du gnrateur.
+	 */
+	public long getGraine()
+	{
+		return graine;
+	}
+	
+	/**
+	 * Retourne un entier de 64 bits pseudo-alatoire.
+	 * @return un entier pseudo-alatoire.
+	 */
+	public long suivant()
+	{
+		etat += PAS_OR;
+		
+		return melanger(etat);
+	}
+	
+	/**
+	 * Retourne un entier pseudo-alatoire compris entre 0 (inclus) et
+	 * borne (exclue), tous les entiers ayant la mme probabilit.
+	 * @param borne la borne suprieure (exclue), strictement positive.
+	 * @return un entier entre 0 et borne-1.
+	 * @throws IllegalArgumentException si la borne n'est pas strictement positive.
+	 */
+	public int entier(int borne)
+	{
+		if (borne <= 0)
+			throw new IllegalArgumentException("La borne doit tre strictement positive : " + borne);
+		
+		int r = (int) (suivant() >>> 33), m = borne - 1;
+		
+		if ((borne & m) == 0) // Si la borne est une puissance de 2
+			return (int) ((borne * (long) r) >> 31);
+		
+		// On rejette les tirages de la dernire tranche incomplte pour viter tout biais
+		for (int u = r; u - (r = u % borne) + m < 0; u = (int) (suivant() >>> 33));
+		
+		return r;
+	}
+	
+	/**
+	 * Cre un nouveau gnrateur dont la suite est indpendante de celle
+	 * du gnrateur courant et l'avance d'un cran. Cela permet par exemple
+	 * de donner  chaque partie d'une simulation son propre gnrateur 
+	 * partir d'un unique gnrateur initial, de faon reproductible.
+	 * La graine du nouveau gnrateur est simplement tire du gnrateur
+	 * courant : une partie utilisant un gnrateur spar peut donc tre
+	 * rejoue  partir de sa graine (voir Partie.getGraine) comme toute autre.
+	 * @return le nouveau gnrateur.
+	 */
+	public Generateur separer()
+	{
+		return new Generateur(suivant());
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant le gnrateur.
+	 * @return une chaine de caractre reprsentant le gnrateur.
+	 */
+	public String toString()
+	{
+		return "Generateur : graine=" + graine;
+	}
+	
+	/**
+	 * Mlange les bits de l'entier fourni (fonction de finalisation de
+	 * MurmurHash3 dans la variante utilise par SplitMix64).
+	 * @param z l'entier  mlanger.
+	 * @return l'entier mlang.
+	 */
+	private static long melanger(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		
+		return z ^ (z >>> 31);
+	}
+}
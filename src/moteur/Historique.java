@@ -0,0 +1,161 @@
+package moteur;
+
+import java.util.ArrayList;
+
+/**
+ * Classe reprsentant l'historique des tats successifs d'un plateau de
+ * jeu, permettant d'annuler et de rtablir autant de coups que voulu (par
+ * exemple en mode entranement ou pour analyser une partie).
+ * Chaque tat est un instantan du plateau (voir Instantane) : un tat ne
+ * recopie que les colonnes modifies depuis l'tat prcdent et partage
+ * les autres avec lui, la mmoire occupe par coup est donc proportionnelle
+ * au nombre de colonnes touches et non  la taille du plateau.
+ * Les tats tant non modifiables, annuler, rtablir ou se rendre  un tat
+ * quelconque se fait en temps constant ; seule la restauration d'un tat
+ * dans un plateau (voir Plateau.restaurer) ncessite de le reconstruire.
+ * Enregistrer un nouvel tat aprs avoir annul des coups efface les tats
+ * qui pouvaient tre rtablis, sauf si le plateau est toujours dans l'tat
+ * courant (par exemple juste aprs l'avoir restaur) : les tats sont
+ * compars selon leur contenu (voir Instantane.equals).
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class Historique
+{
+	/** Les tats enregistrs, du plus ancien au plus rcent */
+	private ArrayList<Instantane> etats;
+	/** La position de l'tat courant dans la liste des tats */
+	private int courant;
+	
+	/**
+	 * Cre un nouvel historique dont le premier tat est l'tat actuel du
+	 * plateau fourni.
+	 * @param plateau le plateau dont on enregistre l'historique.
+	 */
+	public Historique(Plateau plateau)
+	{
+		etats = new ArrayList<Instantane>();
+		etats.add(plateau.getInstantane());
+		courant = 0;
+	}
+	
+	/**
+	 * Permet d'enregistrer l'tat actuel du plateau fourni  la suite de
+	 * l'tat courant, qui devient le nouvel tat courant. Les tats qui
+	 * pouvaient tre rtablis sont effacs. Si le contenu du plateau est
+	 * celui de l'tat courant, rien n'est enregistr.
+	 * @param plateau le plateau dont on enregistre l'tat.
+	 * @return vrai si un nouvel tat a t enregistr, faux sinon.
+	 */
+	public boolean enregistrer(Plateau plateau)
+	{
+		Instantane etat = plateau.getInstantane();
+		
+		if (etat.equals(etats.get(courant)))
+			return false;
+		
+		etats.subList(courant + 1, etats.size()).clear();
+		etats.add(etat);
+		courant++;
+		
+		return true;
+	}
+	
+	/**
+	 * Retourne vrai s'il existe un tat antrieur  l'tat courant.
+	 * @return un boolen indiquant si un coup peut tre annul.
+	 */
+	public boolean peutAnnuler()
+	{
+		return courant > 0;
+	}
+	
+	/**
+	 * Retourne vrai s'il existe un tat postrieur  l'tat courant.
+	 * @return un boolen indiquant si un coup peut tre rtabli.
+	 */
+	public boolean peutRetablir()
+	{
+		return courant < etats.size() - 1;
+	}
+	
+	/**
+	 * Permet de revenir  l'tat prcdant l'tat courant.
+	 * @return le nouvel tat courant.
+	 * @throws IllegalStateException si aucun coup ne peut tre annul.
+	 */
+	public Instantane annuler()
+	{
+		if (!peutAnnuler())
+			throw new IllegalStateException("Aucun coup  annuler");
+		
+		return etats.get(--courant);
+	}
+	
+	/**
+	 * Permet de passer  l'tat suivant l'tat courant.
+	 * @return le nouvel tat courant.
+	 * @throws IllegalStateException si aucun coup ne peut tre rtabli.
+	 */
+	public Instantane retablir()
+	{
+		if (!peutRetablir())
+			throw new IllegalStateException("Aucun coup  rtablir");
+		
+		return etats.get(++courant);
+	}
+	
+	/**
+	 * Permet de se rendre directement  l'tat situ  la position indique,
+	 * qui devient l'tat courant.
+	 * @param position la position de l'tat (entre 0 et getNbEtats()-1).
+	 * @return le nouvel tat courant.
+	 * @throws IndexOutOfBoundsException si la position n'est pas dans l'historique.
+	 */
+	public Instantane allerA(int position)
+	{
+		if (position < 0 || position >= etats.size())
+			throw new IndexOutOfBoundsException("Position hors de l'historique : " + position);
+		
+		courant = position;
+		
+		return etats.get(courant);
+	}
+	
+	/**
+	 * Retourne l'tat courant de l'historique.
+	 * @return l'tat courant.
+	 */
+	public Instantane getEtatCourant()
+	{
+		return etats.get(courant);
+	}
+	
+	/**
+	 * Retourne la position de l'tat courant dans l'historique, 0 dsignant
+	 * le premier tat.
+	 * @return la position de l'tat courant.
+	 */
+	public int getPosition()
+	{
+		return courant;
+	}
+	
+	/**
+	 * Retourne le nombre d'tats enregistrs dans l'historique.
+	 * @return le nombre d'tats.
+	 */
+	public int getNbEtats()
+	{
+		return etats.size();
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant l'historique.
+	 * @return une chaine de caractre reprsentant l'historique.
+	 */
+	public String toString()
+	{
+		return "Historique : tat " + courant + " sur " + etats.size();
+	}
+}
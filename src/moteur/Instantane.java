@@ -0,0 +1,204 @@
+package moteur;
+
+import java.util.Arrays;
+
+/**
+ * Classe reprsentant un instantan du plateau de jeu, c'est--dire une
+ * copie non modifiable de son contenu  un instant donn, pice en chute
+ * comprise. Un instantan peut donc tre lu par un autre thread (celui de
+ * l'affichage par exemple) pendant que le plateau continue d'voluer.
+ * Le contenu est stock colonne par colonne : un nouvel instantan ne
+ * recopie que les colonnes modifies depuis l'instantan prcdent du mme
+ * plateau et partage les autres avec lui. Chaque instantan d'un plateau
+ * porte un numro de version, croissant d'un instantan  l'autre.
+ * L'galit de deux instantans ne dpend que de leur contenu, pas de
+ * leur numro de version.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class Instantane
+{
+	/** Le numro de version de l'instantan */
+	private final long version;
+	/** Le contenu brut de chaque colonne (voir Plateau.lireCase), de la ligne 0  la dernire ligne */
+	private final byte[][] colonnes;
+	/** La hauteur du plateau */
+	private final int hauteur;
+	/** Le code de hachage du contenu, 0 tant qu'il n'a pas t calcul */
+	private int hachage;
+	
+	/**
+	 * Cre un nouvel instantan  partir des colonnes fournies, qui ne
+	 * doivent plus tre modifies par la suite.
+	 * @param version le numro de version de l'instantan.
+	 * @param colonnes le contenu brut de chaque colonne.
+	 * @param hauteur la hauteur du plateau.
+	 */
+	Instantane(long version, byte[][] colonnes, int hauteur)
+	{
+		this.version = version;
+		this.colonnes = colonnes;
+		this.hauteur = hauteur;
+	}
+	
+	/**
+	 * Retourne le numro de version de l'instantan.
+	 * @return le numro de version.
+	 */
+	public long getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * Retourne le nombre de colonnes du plateau.
+	 * @return la largeur du plateau.
+	 */
+	public int getLargeur()
+	{
+		return colonnes.length;
+	}
+	
+	/**
+	 * Retourne le nombre de lignes du plateau, lignes caches comprises.
+	 * @return la hauteur du plateau.
+	 */
+	public int getHauteur()
+	{
+		return hauteur;
+	}
+	
+	/**
+	 * Retourne le contenu brut de la colonne j, partag avec les autres
+	 * instantans et qui ne doit donc pas tre modifi.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return le contenu brut de la colonne.
+	 */
+	byte[] getColonne(int j)
+	{
+		return colonnes[j];
+	}
+	
+	/**
+	 * Retourne le contenu brut de la case (i,j) (voir Plateau.lireCase).
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return le contenu brut de la case.
+	 */
+	int lireCase(int i, int j)
+	{
+		return colonnes[j][i];
+	}
+	
+	/**
+	 * Retourne vrai ou faux selon que la case (i,j) soit libre ou non.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return un booleen indiquant si la case est libre ou non.
+	 */
+	public boolean estLibre(int i, int j)
+	{
+		return colonnes[j][i] == 0;
+	}
+	
+	/**
+	 * Retourne l'indice de la couleur du puyo situ dans la case (i,j)
+	 * parmi les couleurs possibles des puyos.
+	 * Cette mthode ne doit pas tre appele sur une case vide.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return l'indice de la couleur du puyo situ dans la case.
+	 */
+	public int getIndiceCouleurPuyo(int i, int j)
+	{
+		return (colonnes[j][i] & ~Plateau.CHUTE_CASE) - 1;
+	}
+	
+	/**
+	 * Retourne les liens du puyo situ  la case (i,j), calculs comme
+	 * par Plateau.getLiens.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return les liens du puyo sous la forme d'un masque de 4 bits.
+	 */
+	public int getLiens(int i, int j)
+	{
+		byte[] colonne = colonnes[j];
+		int valeur = colonne[i], liens = 0;
+		
+		if (i < Plateau.LIGNES_CACHEES || valeur == 0 || (valeur & Plateau.CHUTE_CASE) != 0)
+			return 0;
+		
+		// La case du dessus doit tre visible : pas de lien vers les lignes caches
+		if (i > Plateau.LIGNES_CACHEES && colonne[i-1] == valeur)
+			liens |= 1 << Puyo.HAUT;
+		if (j+1 < colonnes.length && colonnes[j+1][i] == valeur)
+			liens |= 1 << Puyo.DROITE;
+		if (i+1 < hauteur && colonne[i+1] == valeur)
+			liens |= 1 << Puyo.BAS;
+		if (j > 0 && colonnes[j-1][i] == valeur)
+			liens |= 1 << Puyo.GAUCHE;
+		
+		return liens;
+	}
+	
+	/**
+	 * Retourne vrai ou faux selon que l'instantan soit gal  l'objet test.
+	 * Le rsultat est vrai si l'objet test est un instantan de mmes
+	 * dimensions et de mme contenu, quel que soit son numro de version.
+	 * Les colonnes partages par les deux instantans ne sont pas compares.
+	 * @param obj l'objet  tester.
+	 * @return un booleen indiquant l'galit entre l'instantan et l'objet.
+	 */
+	public boolean equals(Object obj)
+	{
+		Instantane autre;
+		
+		if (obj == this)
+			return true;
+		if (!(obj instanceof Instantane))
+			return false;
+		
+		autre = (Instantane) obj;
+		
+		if (autre.hauteur != hauteur || autre.colonnes.length != colonnes.length || autre.hashCode() != hashCode())
+			return false;
+		
+		for (int j=0; j<colonnes.length; j++)
+		{
+			if (autre.colonnes[j] != colonnes[j] && !Arrays.equals(autre.colonnes[j], colonnes[j]))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Retourne un code de hachage cohrent avec equals, c'est--dire ne
+	 * dpendant que du contenu de l'instantan. Il n'est calcul qu'une fois.
+	 * @return le code de hachage de l'instantan.
+	 */
+	public int hashCode()
+	{
+		int h = hachage;
+		
+		if (h == 0)
+		{
+			h = hauteur;
+			for (int j=0; j<colonnes.length; j++)
+				h = 31 * h + Arrays.hashCode(colonnes[j]);
+			hachage = h;
+		}
+		
+		return h;
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant l'instantan.
+	 * @return une chaine de caractre reprsentant l'instantan.
+	 */
+	public String toString()
+	{
+		return "Instantan " + version + " (" + colonnes.length + "x" + hauteur + ")";
+	}
+}
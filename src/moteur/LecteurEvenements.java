@@ -0,0 +1,116 @@
+package moteur;
+
+/**
+ * Classe reprsentant un lecteur de la file des vnements du moteur de
+ * jeu. Chaque observateur dispose de son propre lecteur, qui retient le
+ * numro du dernier vnement lu : les observateurs avancent donc
+ * indpendamment les uns des autres, sans ralentir le moteur.
+ * Un lecteur ne doit tre utilis que par un seul thread.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class LecteurEvenements
+{
+	/** La file lue */
+	private final FileEvenements file;
+	/** Le numro du dernier vnement lu */
+	private long numero;
+	/** L'vnement courant cod */
+	private long evenement;
+	/** Le nombre d'vnements perdus car remplacs avant d'avoir t lus */
+	private long nbPerdus;
+	
+	/**
+	 * Cre un nouveau lecteur de la file fournie.
+	 * @param file la file  lire.
+	 * @param numero le numro du dernier vnement considr comme lu.
+	 */
+	LecteurEvenements(FileEvenements file, long numero)
+	{
+		this.file = file;
+		this.numero = numero;
+		evenement = 0;
+		nbPerdus = 0;
+	}
+	
+	/**
+	 * Permet de passer  l'vnement suivant s'il a t publi, qui devient
+	 * l'vnement courant. Si des vnements ont t remplacs avant d'avoir
+	 * t lus, le lecteur passe directement au plus ancien vnement encore
+	 * prsent dans la file et les vnements sauts sont compts comme perdus.
+	 * @return vrai si un nouvel vnement est disponible, faux sinon.
+	 */
+	public boolean suivant()
+	{
+		long publie, lu;
+		
+		while (true)
+		{
+			publie = file.getNumeroPublie();
+			
+			if (numero >= publie)
+				return false;
+			
+			if (publie - numero > file.getCapacite()) // Le lecteur a t dpass
+			{
+				nbPerdus += publie - file.getCapacite() - numero;
+				numero = publie - file.getCapacite();
+			}
+			
+			lu = file.lire(numero + 1);
+			
+			// L'vnement n'est valable que si son emplacement n'a pas t rserv  nouveau entre-temps
+			if (file.getNumeroReserve() - (numero + 1) < file.getCapacite())
+			{
+				numero++;
+				evenement = lu;
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Retourne le numro de l'vnement courant.
+	 * @return le numro de l'vnement courant.
+	 */
+	public long getNumero()
+	{
+		return numero;
+	}
+	
+	/**
+	 * Retourne le type de l'vnement courant (voir FileEvenements).
+	 * @return le type de l'vnement courant.
+	 */
+	public int getType()
+	{
+		return FileEvenements.getType(evenement);
+	}
+	
+	/**
+	 * Retourne la valeur associe  l'vnement courant.
+	 * @return la valeur de l'vnement courant.
+	 */
+	public int getValeur()
+	{
+		return FileEvenements.getValeur(evenement);
+	}
+	
+	/**
+	 * Retourne le complment associ  l'vnement courant.
+	 * @return le complment de l'vnement courant.
+	 */
+	public int getComplement()
+	{
+		return FileEvenements.getComplement(evenement);
+	}
+	
+	/**
+	 * Retourne le nombre d'vnements perdus par ce lecteur.
+	 * @return le nombre d'vnements perdus.
+	 */
+	public long getNbPerdus()
+	{
+		return nbPerdus;
+	}
+}
@@ -0,0 +1,335 @@
+package moteur;
+
+import java.util.Arrays;
+
+/**
+ * Classe reprsentant l'ensemble des modifications apportes au plateau de
+ * jeu pendant un battement (une tape du moteur de jeu), pour les classes
+ * qui prfrent ne traiter que ce qui a chang plutt que de comparer des
+ * plateaux entiers (affichage, enregistrement d'une partie, spectateurs).
+ * Chaque modification est de l'un des types suivants :
+ * - POSEE : un puyo occupe dsormais la case (apparition d'une pice ou
+ *   pose d'un puyo), getValeur donnant le nouveau contenu de la case ;
+ * - VIDEE : la case a t vide (destruction d'un bloc), getValeur donnant
+ *   son ancien contenu ;
+ * - DEPLACEMENT : le puyo de la case de dpart a t dplac dans la case
+ *   d'arrive (chute, translation, rotation ou gravit) ;
+ * - LIENS : les liens du puyo de la case ont chang, getValeur donnant les
+ *   nouveaux liens (voir Plateau.getLiens).
+ * Le contenu d'une case vaut l'indice de la couleur du puyo augment de 1,
+ * auquel s'ajoute le bit CHUTE si le puyo appartient  la pice en chute.
+ * Appliques dans l'ordre au plateau du dbut du battement, les
+ * modifications de cases donnent le plateau de la fin du battement ; les
+ * modifications de liens sont places aprs elles.
+ * Chaque modification est code dans un entier d'un tableau rutilis d'un
+ * battement  l'autre, aucune allocation n'est donc effectue une fois le
+ * tableau  la bonne taille. Le contenu n'est valable que jusqu'au
+ * battement suivant.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class Modifications
+{
+	/** Constante dsignant un puyo apparu ou pos dans une case */
+	public static final int POSEE = 0;
+	/** Constante dsignant une case vide */
+	public static final int VIDEE = 1;
+	/** Constante dsignant le dplacement d'un puyo */
+	public static final int DEPLACEMENT = 2;
+	/** Constante dsignant la modification des liens d'un puyo */
+	public static final int LIENS = 3;
+	/** Bit du contenu d'une case indiquant que le puyo appartient  la pice en chute */
+	public static final int CHUTE = Plateau.CHUTE_CASE;
+	/** Le nombre de bits codant une case (6 pour la colonne et 8 pour la ligne) */
+	private static final int BITS_CASE = 14;
+	/** Masque permettant d'extraire une case d'une modification */
+	private static final int MASQUE_CASE = (1 << BITS_CASE) - 1;
+	/** Le nombre de bits codant la colonne dans une case */
+	private static final int BITS_COLONNE = 6;
+	/** Position du type dans une modification */
+	private static final int DECALAGE_TYPE = 2 * BITS_CASE;
+	/** Les modifications codes : le type, puis la case de dpart ou la valeur, puis la case concerne */
+	private int[] enregistrements;
+	/** Le nombre de modifications */
+	private int nbModifications;
+	/** Le nombre de modifications de cases, les modifications de liens tant places aprs elles */
+	private int nbModificationsCases;
+	/** Indique si les modifications de liens ont t calcules depuis la dernire modification de case */
+	private boolean liensCalcules;
+	/** Le numro du battement courant */
+	private int battement;
+	/** Pour chaque case du tableau interne du plateau, le battement pendant lequel ses liens initiaux ont t mmoriss */
+	private int[] battementsLiens;
+	/** Pour chaque case du tableau interne du plateau, ses liens au dbut du battement */
+	private byte[] liensInitiaux;
+	/** Les indices des cases dont les liens ont pu changer pendant le battement */
+	private int[] casesSuivies;
+	/** Le nombre de cases dont les liens ont pu changer */
+	private int nbCasesSuivies;
+	
+	/**
+	 * Cre un nouvel ensemble de modifications vide pour un plateau dont le
+	 * tableau interne comporte le nombre de cases indiqu.
+	 * @param nbCases le nombre de cases du tableau interne du plateau.
+	 */
+	Modifications(int nbCases)
+	{
+		enregistrements = new int[16];
+		battementsLiens = new int[nbCases];
+		liensInitiaux = new byte[nbCases];
+		casesSuivies = new int[nbCases];
+		battement = 1;
+		vider();
+	}
+	
+	/**
+	 * Permet de vider l'ensemble des modifications au dbut d'un nouveau battement.
+	 */
+	void vider()
+	{
+		nbModifications = 0;
+		nbModificationsCases = 0;
+		nbCasesSuivies = 0;
+		liensCalcules = false;
+		battement++;
+		
+		if (battement == 0) // Les marques ne sont effaces que lorsque le numro revient  zro
+		{
+			Arrays.fill(battementsLiens, 0);
+			battement = 1;
+		}
+	}
+	
+	/**
+	 * Retourne le nombre de modifications du battement.
+	 * @return le nombre de modifications.
+	 */
+	public int getNbModifications()
+	{
+		return nbModifications;
+	}
+	
+	/**
+	 * Retourne le type de la modification n (POSEE, VIDEE, DEPLACEMENT ou LIENS).
+	 * @param n le numro de la modification (entre 0 et getNbModifications()-1).
+	 * @return le type de la modification.
+	 */
+	public int getType(int n)
+	{
+		return enregistrements[n] >>> DECALAGE_TYPE;
+	}
+	
+	/**
+	 * Retourne la ligne de la case concerne par la modification n (la case
+	 * d'arrive pour un dplacement).
+	 * @param n le numro de la modification.
+	 * @return la ligne de la case.
+	 */
+	public int getLigne(int n)
+	{
+		return (enregistrements[n] & MASQUE_CASE) >>> BITS_COLONNE;
+	}
+	
+	/**
+	 * Retourne la colonne de la case concerne par la modification n (la case
+	 * d'arrive pour un dplacement).
+	 * @param n le numro de la modification.
+	 * @return la colonne de la case.
+	 */
+	public int getColonne(int n)
+	{
+		return enregistrements[n] & ((1 << BITS_COLONNE) - 1);
+	}
+	
+	/**
+	 * Retourne la ligne de la case de dpart du dplacement n.
+	 * @param n le numro de la modification, de type DEPLACEMENT.
+	 * @return la ligne de la case de dpart.
+	 */
+	public int getLigneDepart(int n)
+	{
+		return ((enregistrements[n] >>> BITS_CASE) & MASQUE_CASE) >>> BITS_COLONNE;
+	}
+	
+	/**
+	 * Retourne la colonne de la case de dpart du dplacement n.
+	 * @param n le numro de la modification, de type DEPLACEMENT.
+	 * @return la colonne de la case de dpart.
+	 */
+	public int getColonneDepart(int n)
+	{
+		return (enregistrements[n] >>> BITS_CASE) & ((1 << BITS_COLONNE) - 1);
+	}
+	
+	/**
+	 * Retourne la valeur associe  la modification n : le nouveau contenu
+	 * de la case pour POSEE, son ancien contenu pour VIDEE et les nouveaux
+	 * liens pour LIENS.
+	 * @param n le numro de la modification.
+	 * @return la valeur de la modification.
+	 */
+	public int getValeur(int n)
+	{
+		return (enregistrements[n] >>> BITS_CASE) & MASQUE_CASE;
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant les modifications.
+	 * @return une chaine de caractre reprsentant les modifications.
+	 */
+	public String toString()
+	{
+		StringBuilder s = new StringBuilder("Modifications :");
+		
+		for (int n=0; n<nbModifications; n++)
+		{
+			s.append("\n - ");
+			switch (getType(n))
+			{
+				case POSEE:
+					s.append("pose (" + getLigne(n) + ", " + getColonne(n) + ") = " + getValeur(n));
+					break;
+				case VIDEE:
+					s.append("vide (" + getLigne(n) + ", " + getColonne(n) + ")");
+					break;
+				case DEPLACEMENT:
+					s.append("dplacement (" + getLigneDepart(n) + ", " + getColonneDepart(n) + ") -> (" + getLigne(n) + ", " + getColonne(n) + ")");
+					break;
+				default:
+					s.append("liens (" + getLigne(n) + ", " + getColonne(n) + ") = " + getValeur(n));
+			}
+		}
+		
+		return s.toString();
+	}
+	
+	/**
+	 * Permet d'ajouter une modification de case. Si les modifications de
+	 * liens avaient dj t calcules, elles sont retires pour tre
+	 * recalcules.
+	 * @param type le type de la modification (POSEE, VIDEE ou DEPLACEMENT).
+	 * @param i la ligne de la case concerne.
+	 * @param j la colonne de la case concerne.
+	 * @param valeur la valeur ou la case de dpart (code par coder).
+	 */
+	void ajouter(int type, int i, int j, int valeur)
+	{
+		if (liensCalcules)
+		{
+			nbModifications = nbModificationsCases;
+			liensCalcules = false;
+		}
+		
+		enregistrer(type, i, j, valeur);
+		nbModificationsCases = nbModifications;
+	}
+	
+	/**
+	 * Permet d'ajouter une modification de liens.
+	 * @param i la ligne de la case concerne.
+	 * @param j la colonne de la case concerne.
+	 * @param liens les nouveaux liens du puyo.
+	 */
+	void ajouterLiens(int i, int j, int liens)
+	{
+		enregistrer(LIENS, i, j, liens);
+	}
+	
+	/**
+	 * Permet d'indiquer que les modifications de liens ont t calcules.
+	 */
+	void terminerLiens()
+	{
+		liensCalcules = true;
+	}
+	
+	/**
+	 * Retourne vrai si les modifications de liens ont t calcules depuis
+	 * la dernire modification de case.
+	 * @return un boolen indiquant si les liens ont t calculs.
+	 */
+	boolean liensCalcules()
+	{
+		return liensCalcules;
+	}
+	
+	/**
+	 * Retourne la case (i,j) code comme dans une modification.
+	 * @param i la ligne de la case.
+	 * @param j la colonne de la case.
+	 * @return la case code.
+	 */
+	static int coder(int i, int j)
+	{
+		return (i << BITS_COLONNE) | j;
+	}
+	
+	/**
+	 * Permet d'crire une modification  la fin du tableau, en l'agrandissant
+	 * si ncessaire.
+	 * @param type le type de la modification.
+	 * @param i la ligne de la case concerne.
+	 * @param j la colonne de la case concerne.
+	 * @param valeur la valeur ou la case de dpart.
+	 */
+	private void enregistrer(int type, int i, int j, int valeur)
+	{
+		if (nbModifications == enregistrements.length)
+			enregistrements = Arrays.copyOf(enregistrements, 2 * enregistrements.length);
+		
+		enregistrements[nbModifications++] = (type << DECALAGE_TYPE) | (valeur << BITS_CASE) | coder(i, j);
+	}
+	
+	/**
+	 * Retourne vrai si les liens initiaux de la case d'indice k du tableau
+	 * interne n'ont pas encore t mmoriss pendant le battement.
+	 * @param k l'indice de la case dans le tableau interne du plateau.
+	 * @return un boolen indiquant si les liens doivent tre mmoriss.
+	 */
+	boolean doitMemoriser(int k)
+	{
+		return battementsLiens[k] != battement;
+	}
+	
+	/**
+	 * Permet de mmoriser les liens de la case d'indice k au dbut du
+	 * battement, avant qu'elle ou une de ses voisines soit modifie.
+	 * @param k l'indice de la case dans le tableau interne du plateau.
+	 * @param liens les liens de la case.
+	 */
+	void memoriserLiens(int k, int liens)
+	{
+		battementsLiens[k] = battement;
+		liensInitiaux[k] = (byte) liens;
+		casesSuivies[nbCasesSuivies++] = k;
+	}
+	
+	/**
+	 * Retourne le nombre de cases dont les liens ont pu changer.
+	 * @return le nombre de cases suivies.
+	 */
+	int getNbCasesSuivies()
+	{
+		return nbCasesSuivies;
+	}
+	
+	/**
+	 * Retourne l'indice dans le tableau interne de la n-ime case suivie.
+	 * @param n le numro de la case suivie.
+	 * @return l'indice de la case.
+	 */
+	int getCaseSuivie(int n)
+	{
+		return casesSuivies[n];
+	}
+	
+	/**
+	 * Retourne les liens de la case d'indice k au dbut du battement.
+	 * @param k l'indice de la case, qui doit tre suivie.
+	 * @return les liens initiaux de la case.
+	 */
+	int getLiensInitiaux(int k)
+	{
+		return liensInitiaux[k];
+	}
+}
@@ -0,0 +1,234 @@
+package moteur;
+
+/**
+ * Classe implmentant le droulement d'une partie indpendamment de
+ * l'interface graphique et du temps : chaque appel  etape fait avancer
+ * la partie d'une tape de faon dterministe et retourne ce qui s'est
+ * produit. Une partie passe successivement par les phases suivantes :
+ * la chute de la pice courante (phase CHUTE), puis, une fois la pice
+ * pose, une alternance de destructions de blocs (phase DESTRUCTION) et
+ * d'applications de la gravit (phase GRAVITE) jusqu' ce qu'aucun bloc
+ * ne soit plus dtruit, la pice suivante tant alors charge. La phase
+ * TERMINEE indique que la partie est perdue.
+ * Pendant la phase CHUTE, l'entre fournie est applique  la pice
+ * courante ; l'entre AUCUNE correspond  un battement de la chute. Dans
+ * les autres phases, l'entre est ignore.
+ * Chaque fait marquant de la partie est galement publi dans la file
+ * d'vnements du moteur, que les observateurs lisent  leur rythme.
+ * Les mthodes faisant avancer une partie dtiennent le verrou du moteur,
+ * qui est donc le seul  publier dans sa file ; les threads qui lisent la
+ * partie ou le rsultat d'une tape prennent ce mme verrou.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class MoteurJeu
+{
+	/** Constante dsignant l'absence d'action du joueur : la pice descend d'une case */
+	public static final int AUCUNE = 0;
+	/** Constante dsignant une translation de la pice vers la gauche */
+	public static final int GAUCHE = 1;
+	/** Constante dsignant une translation de la pice vers la droite */
+	public static final int DROITE = 2;
+	/** Constante dsignant une rotation de la pice dans le sens horaire */
+	public static final int HORAIRE = 3;
+	/** Constante dsignant une rotation de la pice dans le sens antihoraire */
+	public static final int ANTIHORAIRE = 4;
+	/** Constante dsignant la chute directe de la pice */
+	public static final int CHUTE_RAPIDE = 5;
+	/** Constante dsignant la phase de chute de la pice courante */
+	public static final int CHUTE = 0;
+	/** Constante dsignant la phase de destruction des blocs */
+	public static final int DESTRUCTION = 1;
+	/** Constante dsignant la phase d'application de la gravit */
+	public static final int GRAVITE = 2;
+	/** Constante dsignant la phase d'une partie perdue */
+	public static final int TERMINEE = 3;
+	/** Le rsultat de la dernire tape, rutilis d'une tape  l'autre */
+	private ResultatEtape resultat;
+	/** La file dans laquelle sont publis les vnements des parties */
+	private FileEvenements evenements;
+	
+	/**
+	 * Cre un nouveau moteur de jeu.
+	 */
+	public MoteurJeu()
+	{
+		resultat = new ResultatEtape();
+		evenements = new FileEvenements();
+	}
+	
+	/**
+	 * Retourne la file dans laquelle le moteur publie les vnements des
+	 * parties qu'il fait avancer.
+	 * @return la file d'vnements du moteur.
+	 */
+	public FileEvenements getEvenements()
+	{
+		return evenements;
+	}
+	
+	/**
+	 * Permet de commencer la partie fournie : la premire pice est
+	 * charge et la partie entre en phase de chute.
+	 * @param partie la partie  commencer.
+	 */
+	public synchronized void commencer(Partie partie)
+	{
+		partie.getPlateau().viderModifications();
+		partie.commencerPartie();
+		partie.chargerPieceSuivante();
+		partie.setPhase(CHUTE);
+		evenements.publier(FileEvenements.PARTIE_COMMENCEE, partie.getDifficulte(), 0);
+		evenements.publier(FileEvenements.PIECE_APPARUE, partie.getPieceCourante().getForme(), 0);
+	}
+	
+	/**
+	 * Permet d'augmenter la difficult de la partie fournie  la demande du
+	 * joueur, si elle n'est pas dj maximale.
+	 * @param partie la partie considre.
+	 * @return vrai si la difficult a t modifie, faux sinon.
+	 */
+	public synchronized boolean augmenterDifficulte(Partie partie)
+	{
+		if (!partie.augmenterDifficulte())
+			return false;
+		
+		evenements.publier(FileEvenements.DIFFICULTE_MODIFIEE, partie.getDifficulte(), 0);
+		
+		return true;
+	}
+	
+	/**
+	 * Permet de faire avancer la partie fournie d'une tape en tenant
+	 * compte de l'entre indique. Une partie non commence ou en pause
+	 * n'est pas modifie.
+	 * Le rsultat retourn est rutilis par le moteur, il n'est valable
+	 * que jusqu' l'tape suivante. Si le plateau suit ses modifications,
+	 * celles de l'tape sont ensuite disponibles par getModifications.
+	 * @param partie la partie  faire avancer.
+	 * @param entree l'action du joueur (AUCUNE, GAUCHE, DROITE, HORAIRE,
+	 * ANTIHORAIRE ou CHUTE_RAPIDE).
+	 * @return le rsultat de l'tape.
+	 * @throws IllegalArgumentException si l'entre n'est pas valide.
+	 */
+	public synchronized ResultatEtape etape(Partie partie, int entree)
+	{
+		if (entree < AUCUNE || entree > CHUTE_RAPIDE)
+			throw new IllegalArgumentException("Entre invalide : " + entree);
+		
+		resultat.reinitialiser();
+		partie.getPlateau().viderModifications(); // Chaque tape est un nouveau battement
+		
+		if (partie.estEnCours() && !partie.estEnPause())
+		{
+			switch (partie.getPhase())
+			{
+				case CHUTE:
+					etapeChute(partie, entree);
+					break;
+				case DESTRUCTION:
+					etapeDestruction(partie);
+					break;
+				case GRAVITE:
+					partie.getPlateau().faireChuterPuyos();
+					partie.setPhase(DESTRUCTION);
+					break;
+				case TERMINEE:
+					resultat.setPerdu();
+					break;
+			}
+		}
+		
+		return resultat;
+	}
+	
+	/**
+	 * Permet d'effectuer une tape de la phase de chute : l'entre est
+	 * applique  la pice courante. Une pice casse n'accepte plus
+	 * d'action et termine sa chute en une seule tape.
+	 * @param partie la partie considre.
+	 * @param entree l'action du joueur.
+	 */
+	private void etapeChute(Partie partie, int entree)
+	{
+		Plateau plateau = partie.getPlateau();
+		Piece piece = partie.getPieceCourante();
+		int ret;
+		
+		if (entree != AUCUNE && piece.estCassee())
+			return;
+		
+		switch (entree)
+		{
+			case GAUCHE:
+				plateau.translationHorizontale(Plateau.GAUCHE, piece);
+				return;
+			case DROITE:
+				plateau.translationHorizontale(Plateau.DROITE, piece);
+				return;
+			case HORAIRE:
+				plateau.rotation(Plateau.HORAIRE, piece);
+				return;
+			case ANTIHORAIRE:
+				plateau.rotation(Plateau.ANTIHORAIRE, piece);
+				return;
+			case CHUTE_RAPIDE:
+				ret = plateau.chuteRapide(piece);
+				break;
+			default:
+				ret = plateau.translationVerticale(piece);
+				
+				if (ret == Plateau.PIECE_NON_VIDE && piece.estCassee()) // Si la pice vient de se casser
+					ret = plateau.chuteRapide(piece); // les puyos restants tombent directement.
+				break;
+		}
+		
+		if (ret == Plateau.PERDU)
+		{
+			partie.setPhase(TERMINEE);
+			resultat.setPerdu();
+			evenements.publier(FileEvenements.PARTIE_TERMINEE, partie.getScore(), 0);
+		}
+		else if (ret == Plateau.PIECE_VIDE)
+		{
+			partie.setPhase(DESTRUCTION);
+			resultat.setPosee();
+			evenements.publier(FileEvenements.PIECE_POSEE, 0, 0);
+		}
+	}
+	
+	/**
+	 * Permet d'effectuer une tape de la phase de destruction : si des blocs
+	 * sont dtruits, le score est mis  jour et la gravit sera applique 
+	 * l'tape suivante, sinon l'enchanement est termin et la pice suivante
+	 * est charge.
+	 * @param partie la partie considre.
+	 */
+	private void etapeDestruction(Partie partie)
+	{
+		Plateau plateau = partie.getPlateau();
+		int score = plateau.detruireBlocs(), ancienScore;
+		boolean difficulteModifiee;
+		
+		if (score != 0) // Si on a dtruit un bloc au moins
+		{
+			partie.ajoutCombo();
+			ancienScore = partie.getScore();
+			difficulteModifiee = partie.ajoutScore(score);
+			resultat.setDestructions(plateau.getNbBlocsDetruits(), partie.getCombo(), partie.getScore() - ancienScore, difficulteModifiee);
+			partie.setPhase(GRAVITE);
+			evenements.publier(FileEvenements.BLOCS_DETRUITS, partie.getScore() - ancienScore, plateau.getNbBlocsDetruits());
+			evenements.publier(FileEvenements.ENCHAINEMENT, partie.getScore(), partie.getCombo());
+			if (difficulteModifiee)
+				evenements.publier(FileEvenements.DIFFICULTE_MODIFIEE, partie.getDifficulte(), 0);
+		}
+		else
+		{
+			partie.resetCombo();
+			partie.chargerPieceSuivante();
+			resultat.setPieceChargee();
+			partie.setPhase(CHUTE);
+			evenements.publier(FileEvenements.PIECE_APPARUE, partie.getPieceCourante().getForme(), 0);
+		}
+	}
+}
@@ -1,11 +1,11 @@
 package moteur;
 
-import java.util.concurrent.LinkedBlockingQueue;
-
 /**
  * Classe reprsentant une partie, c'est--dire un plateau de jeu,
  * un niveau de difficult, un score, la pice en train de chuter
- * et les deux pices  venir.
+ * et les pices  venir (deux par dfaut, au plus PROFONDEUR_MAX). Les pices sont tires  l'aide d'un
+ * gnrateur propre  la partie : une partie cre avec une graine donne
+ * peut tre rejoue  l'identique.
  * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
  *
  */
@@ -13,8 +13,12 @@ public class Partie
 {
 	/** Le plateau de jeu */
 	private Plateau plateau;
-	/** Une file contenant les deux prochaines pices */
-	private LinkedBlockingQueue<Piece> prochainesPieces;
+	/** Le nombre de pices  venir par dfaut */
+	public static final int PROFONDEUR = 2;
+	/** Le nombre maximal de pices  venir */
+	public static final int PROFONDEUR_MAX = 16;
+	/** La file contenant les prochaines pices */
+	private FilePieces prochainesPieces;
 	/** La pice en cours de chute */
 	private Piece pieceCourante;
 	/** Le score courant */
@@ -23,29 +27,92 @@ public class Partie
 	private int difficulte;
 	/** Le nombre d'enchanements effectus */
 	private int combo;
-	/** Indique si la partie est commence ou non */
-	private boolean start;
-	/** Indique si la partie est mise en pause ou non */
-	private boolean pause;
+	/** Indique si la partie est commence ou non, lu par les threads du contrleur */
+	private volatile boolean start;
+	/** Indique si la partie est mise en pause ou non, lu par les threads du contrleur */
+	private volatile boolean pause;
 	/** Contient les valeurs de changement de difficult */
 	private int[] changementsDifficulte;
+	/** La phase dans laquelle se trouve la partie (voir MoteurJeu), lue par les threads du contrleur */
+	private volatile int phase;
+	/** Le gnrateur utilis pour tirer les pices de la partie */
+	private Generateur generateur;
 	
 	/**
 	 * Cre une nouvelle partie non commence avec un plateau vide
-	 * et deux pices en attente.
+	 * aux dimensions par dfaut et deux pices en attente, la graine
+	 * de la partie tant tire de l'horloge (voir getGraine).
 	 */
 	public Partie()
 	{
-		plateau = new Plateau();
-		prochainesPieces = new LinkedBlockingQueue<Piece>(2);
+		this(Plateau.LARGEUR, Plateau.HAUTEUR);
+	}
+	
+	/**
+	 * Cre une nouvelle partie non commence avec un plateau vide
+	 * aux dimensions par dfaut et deux pices en attente, les pices
+	 * tant tires  partir de la graine fournie.
+	 * @param graine la graine du gnrateur de la partie.
+	 */
+	public Partie(long graine)
+	{
+		this(Plateau.LARGEUR, Plateau.HAUTEUR, new Generateur(graine));
+	}
+	
+	/**
+	 * Cre une nouvelle partie non commence avec un plateau vide
+	 * de largeur colonnes sur hauteur lignes et deux pices en attente,
+	 * la graine de la partie tant tire de l'horloge (voir getGraine).
+	 * @param largeur le nombre de colonnes du plateau.
+	 * @param hauteur le nombre de lignes du plateau, lignes caches comprises.
+	 * @throws IllegalArgumentException si les dimensions ne sont pas valides.
+	 */
+	public Partie(int largeur, int hauteur)
+	{
+		this(largeur, hauteur, new Generateur(System.nanoTime()));
+	}
+	
+	/**
+	 * Cre une nouvelle partie non commence avec un plateau vide
+	 * de largeur colonnes sur hauteur lignes et deux pices en attente,
+	 * les pices tant tires  l'aide du gnrateur fourni. Le gnrateur
+	 * appartient ensuite  la partie et ne doit pas tre utilis ailleurs.
+	 * @param largeur le nombre de colonnes du plateau.
+	 * @param hauteur le nombre de lignes du plateau, lignes caches comprises.
+	 * @param generateur le gnrateur de la partie.
+	 * @throws IllegalArgumentException si les dimensions ne sont pas valides.
+	 */
+	public Partie(int largeur, int hauteur, Generateur generateur)
+	{
+		this(largeur, hauteur, generateur, PROFONDEUR);
+	}
+	
+	/**
+	 * Cre une nouvelle partie non commence avec un plateau vide
+	 * de largeur colonnes sur hauteur lignes et profondeur pices en
+	 * attente, les pices tant tires  l'aide du gnrateur fourni.
+	 * Le gnrateur appartient ensuite  la partie et ne doit pas tre
+	 * utilis ailleurs.
+	 * @param largeur le nombre de colonnes du plateau.
+	 * @param hauteur le nombre de lignes du plateau, lignes caches comprises.
+	 * @param generateur le gnrateur de la partie.
+	 * @param profondeur le nombre de pices en attente (entre 1 et PROFONDEUR_MAX).
+	 * @throws IllegalArgumentException si les dimensions ou la profondeur ne sont pas valides.
+	 */
+	public Partie(int largeur, int hauteur, Generateur generateur, int profondeur)
+	{
+		if (profondeur < 1 || profondeur > PROFONDEUR_MAX)
+			throw new IllegalArgumentException("Nombre de pices en attente invalide : " + profondeur);
+		
+		this.generateur = generateur;
+		plateau = new Plateau(largeur, hauteur);
+		prochainesPieces = new FilePieces(profondeur, generateur);
 		score = 0;
 		difficulte = 0;
 		combo = 0;
 		start = false;
 		pause = false;
-		
-		prochainesPieces.add(new Piece());
-		prochainesPieces.add(new Piece());
+		phase = MoteurJeu.CHUTE;
 		
 		// On cre le tableau contenant les valeurs de changement de difficult
 		changementsDifficulte = new int[9];
@@ -77,28 +144,56 @@ public class Partie
 	/**
 	 * Prend la premire pice de la file d'attente pour l'utiliser
 	 * comme pice courante et ajoute une nouvelle pice en fin de
-	 * file pour maintenir le nombre de pices en attente  2.
-	 * Retourne un tableau contenant les deux pices en attente
-	 * aprs le chargement de la pice suivante.
-	 * @return un tableau contenant les deux pices en attente.
+	 * file pour maintenir le nombre de pices en attente.
+	 * Retourne la file des pices en attente aprs le chargement de
+	 * la pice suivante.
+	 * @return la file des pices en attente.
 	 */
-	public Piece[] chargerPieceSuivante()
+	public FilePieces chargerPieceSuivante()
 	{
-		pieceCourante = prochainesPieces.poll();
+		pieceCourante = prochainesPieces.avancer(new Piece(generateur));
 		plateau.ajouter(pieceCourante);
-		prochainesPieces.add(new Piece());
 		
-		return prochainesPieces.toArray(new Piece[2]);
+		return prochainesPieces;
+	}
+	
+	/**
+	 * Retourne la file des pices actuellement en attente. La file est
+	 * accessible en lecture seule et suit l'volution de la partie.
+	 * @return la file des pices en attente.
+	 */
+	public FilePieces getPiecesSuivantes()
+	{
+		return prochainesPieces;
+	}
+	
+	/**
+	 * Retourne la graine du gnrateur de la partie, qui permet de
+	 * rejouer la partie  l'identique.
+	 * @return la graine de la partie.
+	 */
+	public long getGraine()
+	{
+		return generateur.getGraine();
+	}
+	
+	/**
+	 * Retourne la phase dans laquelle se trouve la partie (MoteurJeu.CHUTE,
+	 * DESTRUCTION, GRAVITE ou TERMINEE).
+	 * @return la phase de la partie.
+	 */
+	public int getPhase()
+	{
+		return phase;
 	}
 	
 	/**
-	 * Retourne les deux pices actuellement en attente dans un
-	 * tableau.
-	 * @return un tableau contenant les deux pices en attente.
+	 * Permet de modifier la phase dans laquelle se trouve la partie.
+	 * @param phase la nouvelle phase de la partie.
 	 */
-	public Piece[] getPiecesSuivantes()
+	void setPhase(int phase)
 	{
-		return prochainesPieces.toArray(new Piece[2]);
+		this.phase = phase;
 	}
 	
 	/**
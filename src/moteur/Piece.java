@@ -1,89 +1,174 @@
 package moteur;
 
 import java.awt.Point;
-import java.util.HashMap;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Random;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * Classe reprsentant une pice c'est--dire un assemblage de 2 ou 3 puyos.
  * Le nombre du puyo composant la pice et sa forme si elle est compose de
- * 3 puyos sont choisis alatoirement lors de la cration de la pice.
+ * 3 puyos sont choisis alatoirement lors de la cration de la pice, 
+ * l'aide du gnrateur de la partie.
  * Une pice fait correspondre  chaque puyo qui la compose une coordonne
  * dans le plateau de jeu. Elle est capable de donner ses coordonnes minimales
  * et maximales dans le plateau de jeu et possde un puyo pivot qui sert de
  * centre pour les rotations de la pice.
  * Elle sait  tout instant si elle est casse ou pas (c'est--dire, si un de
  * ses puyos est bloqu et ne peut plus chuter).
+ * Les puyos et leurs coordonnes sont stocks dans des emplacements fixes
+ * (au plus 3) et les coordonnes extrmes sont maintenues  chaque modification,
+ * aucun dplacement de la pice n'effectue d'allocation. La pice reste
+ * utilisable comme une table associant  chaque puyo ses coordonnes, les
+ * puyos tant alors compars par identit et les coordonnes retournes
+ * tant des copies. Elle n'hrite plus de HashMap, dont la table serait
+ * reste vide, mais reste une Map srialisable et clonable.
+ * Les positions des puyos par rapport au pivot pour chaque forme et chaque
+ * orientation sont prcalcules, une rotation se rduit donc  la lecture
+ * d'une table.
  * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
  *
  */
-public class Piece extends HashMap<Puyo, Point>
+public class Piece extends AbstractMap<Puyo, Point> implements Cloneable, Serializable
 {
 	private static final long serialVersionUID = -6304397420328786766L;
-	/** Gnrateur de nombres alatoires partag par toutes les pices */
-	private static Random rand = new Random();
 	/** Constante dfinissant une pice forme de 2 puyos */
 	public static final int DOUBLE = 0;
 	/** Constante dfinissant une pice linaire forme de 3 puyos */
 	public static final int TRIPLE = 1;
 	/** Constante dfinissant une pice coude forme de 3 puyos */
 	public static final int COUDE = 2;
+	/** Le nombre maximal de puyos d'une pice */
+	public static final int NB_MAX_PUYOS = 3;
+	/** Le nombre d'orientations possibles d'une pice */
+	public static final int NB_ORIENTATIONS = 4;
+	/** Les dcalages (ligne, colonne) de chaque puyo par rapport au pivot pour chaque forme, chaque orientation et chaque emplacement d'origine */
+	private static final int[][][][] DECALAGES = new int[COUDE+1][NB_ORIENTATIONS][][];
+	
+	static
+	{
+		DECALAGES[DOUBLE][0] = new int[][] {{-1, 0}, {0, 0}};
+		DECALAGES[TRIPLE][0] = new int[][] {{-1, 0}, {0, 0}, {1, 0}};
+		DECALAGES[COUDE][0] = new int[][] {{-1, 0}, {0, 0}, {0, 1}};
+		
+		// Chaque orientation s'obtient par une rotation horaire de 90 de la prcdente
+		for (int f=DOUBLE; f<=COUDE; f++)
+		{
+			for (int o=1; o<NB_ORIENTATIONS; o++)
+			{
+				int[][] precedente = DECALAGES[f][o-1];
+				DECALAGES[f][o] = new int[precedente.length][];
+				
+				for (int s=0; s<precedente.length; s++)
+					DECALAGES[f][o][s] = new int[] {precedente[s][1], -precedente[s][0]};
+			}
+		}
+	}
+	
 	/** La forme de la pice */
 	private int forme;
 	/** Booleen indiquant si la pice est casse ou non */
 	private boolean cassee;
 	/** Puyo constituant le centre de rotation de la pice */
 	private Puyo pivot;
-	
+	/** Les puyos de la pice, dans les premiers emplacements */
+	private Puyo[] puyos;
+	/** Les lignes des puyos de la pice */
+	private int[] lignes;
+	/** Les colonnes des puyos de la pice */
+	private int[] colonnes;
+	/** Les emplacements d'origine des puyos de la pice, servant d'indice dans la table des dcalages */
+	private int[] origines;
+	/** Le nombre de puyos de la pice */
+	private int nbPuyos;
+	/** L'orientation de la pice (entre 0 et NB_ORIENTATIONS-1) */
+	private int orientation;
+	/** Les coordonnes extrmes de la pice */
+	private int minI, maxI, minJ, maxJ;
+		
 	/**
-	 * Cre une nouvelle pice dont le nombre de puyos et la forme est
-	 * choisie alatoirement. A l'origine une pice n'est pas casse.
+	 * Cre une nouvelle pice dont le nombre de puyos, la forme et les
+	 * couleurs sont choisis  l'aide du gnrateur fourni. A l'origine une
+	 * pice n'est pas casse.
+	 * @param generateur le gnrateur utilis pour choisir la pice.
 	 */
-	public Piece()
+	public Piece(Generateur generateur)
 	{
-		super();
-		
-		cassee = false;
-
-		forme = rand.nextInt(COUDE+1);
+		this(generateur.entier(COUDE+1), 0, false);
 		
 		switch(forme)
 		{
 			case DOUBLE:
-				this.put(new Puyo(), new Point(1, 2));
-				pivot = new Puyo();
-				this.put(pivot, new Point(2, 2));
+				ajouterPuyo(new Puyo(generateur), 1, 2);
+				pivot = new Puyo(generateur);
+				ajouterPuyo(pivot, 2, 2);
 				break;
 			case TRIPLE:
-				this.put(new Puyo(), new Point(0, 2));
-				pivot = new Puyo();
-				this.put(pivot, new Point(1, 2));
-				this.put(new Puyo(), new Point(2, 2));
+				ajouterPuyo(new Puyo(generateur), 0, 2);
+				pivot = new Puyo(generateur);
+				ajouterPuyo(pivot, 1, 2);
+				ajouterPuyo(new Puyo(generateur), 2, 2);
 				break;
 			case COUDE:
-				this.put(new Puyo(), new Point(1, 2));
-				pivot = new Puyo();
-				this.put(pivot, new Point(2, 2));
-				this.put(new Puyo(), new Point(2, 3));
+				ajouterPuyo(new Puyo(generateur), 1, 2);
+				pivot = new Puyo(generateur);
+				ajouterPuyo(pivot, 2, 2);
+				ajouterPuyo(new Puyo(generateur), 2, 3);
 				break;
 		}
 	}
 	
+	/**
+	 * Cre une nouvelle pice vide de la forme, de l'orientation et de
+	 * l'tat indiqus, ses puyos devant tre ajouts un  un (voir
+	 * ajouterPuyo). Utilis pour reconstruire une pice (voir CodecPlateau).
+	 * @param forme la forme de la pice (DOUBLE, TRIPLE ou COUDE).
+	 * @param orientation l'orientation de la pice (entre 0 et NB_ORIENTATIONS-1).
+	 * @param cassee indique si la pice est casse.
+	 */
+	Piece(int forme, int orientation, boolean cassee)
+	{
+		super();
+		
+		this.forme = forme;
+		this.orientation = orientation;
+		this.cassee = cassee;
+		puyos = new Puyo[NB_MAX_PUYOS];
+		lignes = new int[NB_MAX_PUYOS];
+		colonnes = new int[NB_MAX_PUYOS];
+		origines = new int[NB_MAX_PUYOS];
+		nbPuyos = 0;
+		pivot = null;
+		minI = minJ = Integer.MAX_VALUE;
+		maxI = maxJ = Integer.MIN_VALUE;
+	}
+	
 	/**
 	 * Clone la pice de telle sorte que les Puyos contenus soient les mmes que dans la pice
-	 * originale mais que les points associs soient des clones des originaux (copie semi-profonde).
-	 * @return le clone de la pice tel que les points associs aux Puyos soient aussi des clones.
+	 * originale mais que les coordonnes associes soient des copies des originales (copie semi-profonde).
+	 * @return le clone de la pice.
 	 */
 	public Object clone()
 	{
-		Piece clone = (Piece) super.clone();
+		Piece clone;
 		
-		for (Puyo puyo : this.keySet())
+		try
+		{
+			clone = (Piece) super.clone();
+		} catch (CloneNotSupportedException e)
 		{
-			clone.put(puyo, (Point) clone.get(puyo).clone());
+			throw new InternalError();
 		}
 		
+		clone.puyos = puyos.clone();
+		clone.lignes = lignes.clone();
+		clone.colonnes = colonnes.clone();
+		clone.origines = origines.clone();
+		
 		return clone;
 	}
 	
@@ -95,9 +180,9 @@ public class Piece extends HashMap<Puyo, Point>
 	{
 		StringBuilder str = new StringBuilder("Pice :");
 		
-		for (Map.Entry<Puyo, Point> paire : this.entrySet())
+		for (int s=0; s<nbPuyos; s++)
 		{
-			str.append("\n - "+paire.getKey()+" : "+paire.getValue());
+			str.append("\n - "+puyos[s]+" : ("+lignes[s]+", "+colonnes[s]+")");
 		}
 		
 		return str.toString();
@@ -113,20 +198,239 @@ public class Piece extends HashMap<Puyo, Point>
 	}
 	
 	/**
-	 * Retourne la coordonne de la ligne minimale (la plus haute dans le
-	 * plateau de jeu) de la pice.
-	 * @return la coordonne dsignant la ligne minimale de la pice.
+	 * Retourne le nombre de puyos restant dans la pice.
+	 * @return le nombre de puyos de la pice.
 	 */
-	public int getMinI()
+	public int getNbPuyos()
 	{
-		int minI = Integer.MAX_VALUE;
+		return nbPuyos;
+	}
+	
+	/**
+	 * Retourne le puyo situ dans l'emplacement s de la pice.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 * @return le puyo de l'emplacement.
+	 */
+	public Puyo getPuyo(int s)
+	{
+		return puyos[s];
+	}
+	
+	/**
+	 * Retourne la ligne du puyo situ dans l'emplacement s de la pice.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 * @return la coordonne dsignant la ligne du puyo.
+	 */
+	public int getLigne(int s)
+	{
+		return lignes[s];
+	}
+	
+	/**
+	 * Retourne la colonne du puyo situ dans l'emplacement s de la pice.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 * @return la coordonne dsignant la colonne du puyo.
+	 */
+	public int getColonne(int s)
+	{
+		return colonnes[s];
+	}
+	
+	/**
+	 * Retourne l'emplacement du puyo de la pice situ  la case (i,j) du
+	 * plateau ou -1 si aucun puyo de la pice n'occupe cette case.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return l'emplacement du puyo ou -1.
+	 */
+	public int chercher(int i, int j)
+	{
+		for (int s=0; s<nbPuyos; s++)
+		{
+			if (lignes[s] == i && colonnes[s] == j)
+				return s;
+		}
 		
-		for (Point p : this.values())
+		return -1;
+	}
+	
+	/**
+	 * Retourne l'emplacement du puyo fourni dans la pice ou -1 s'il
+	 * n'appartient pas (ou plus)  la pice. Les puyos sont compars
+	 * par identit.
+	 * @param puyo le puyo recherch.
+	 * @return l'emplacement du puyo ou -1.
+	 */
+	public int chercher(Object puyo)
+	{
+		for (int s=0; s<nbPuyos; s++)
+		{
+			if (puyos[s] == puyo)
+				return s;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Permet de modifier les coordonnes du puyo situ dans l'emplacement s.
+	 * Les coordonnes extrmes de la pice sont mises  jour  partir des
+	 * anciennes et des nouvelles coordonnes du puyo ; les puyos de la pice
+	 * ne sont parcourus que si le puyo quitte une ligne ou une colonne
+	 * extrme, pour la seule borne concerne.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 * @param i la coordonne dsignant la nouvelle ligne du puyo.
+	 * @param j la coordonne dsignant la nouvelle colonne du puyo.
+	 */
+	public void setPosition(int s, int i, int j)
+	{
+		int ancienneI = lignes[s], ancienneJ = colonnes[s];
+		
+		lignes[s] = i;
+		colonnes[s] = j;
+		
+		if (i < minI)
+			minI = i;
+		else if (ancienneI == minI && i > ancienneI)
+			minI = minimum(lignes);
+		if (i > maxI)
+			maxI = i;
+		else if (ancienneI == maxI && i < ancienneI)
+			maxI = maximum(lignes);
+		
+		if (j < minJ)
+			minJ = j;
+		else if (ancienneJ == minJ && j > ancienneJ)
+			minJ = minimum(colonnes);
+		if (j > maxJ)
+			maxJ = j;
+		else if (ancienneJ == maxJ && j < ancienneJ)
+			maxJ = maximum(colonnes);
+	}
+	
+	/**
+	 * Permet de retirer de la pice le puyo situ dans l'emplacement s,
+	 * les puyos suivants tant dcals d'un emplacement.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 */
+	public void retirer(int s)
+	{
+		int ancienneI = lignes[s], ancienneJ = colonnes[s];
+		
+		nbPuyos--;
+		
+		for (int t=s; t<nbPuyos; t++)
+		{
+			puyos[t] = puyos[t+1];
+			lignes[t] = lignes[t+1];
+			colonnes[t] = colonnes[t+1];
+			origines[t] = origines[t+1];
+		}
+		
+		puyos[nbPuyos] = null;
+		
+		// Seules les bornes sur lesquelles se trouvait le puyo retir peuvent changer.
+		if (ancienneI == minI)
+			minI = minimum(lignes);
+		if (ancienneI == maxI)
+			maxI = maximum(lignes);
+		if (ancienneJ == minJ)
+			minJ = minimum(colonnes);
+		if (ancienneJ == maxJ)
+			maxJ = maximum(colonnes);
+	}
+	
+	/**
+	 * Permet d'ajouter un puyo  la pice dans le premier emplacement libre.
+	 * @param puyo le puyo  ajouter.
+	 * @param i la coordonne dsignant la ligne du puyo.
+	 * @param j la coordonne dsignant la colonne du puyo.
+	 */
+	private void ajouterPuyo(Puyo puyo, int i, int j)
+	{
+		ajouterPuyo(puyo, i, j, nbPuyos);
+	}
+	
+	/**
+	 * Permet d'ajouter un puyo  la pice dans le premier emplacement libre
+	 * en prcisant son emplacement d'origine dans la forme de la pice.
+	 * @param puyo le puyo  ajouter.
+	 * @param i la coordonne dsignant la ligne du puyo.
+	 * @param j la coordonne dsignant la colonne du puyo.
+	 * @param origine l'emplacement d'origine du puyo.
+	 */
+	void ajouterPuyo(Puyo puyo, int i, int j, int origine)
+	{
+		puyos[nbPuyos] = puyo;
+		lignes[nbPuyos] = i;
+		colonnes[nbPuyos] = j;
+		origines[nbPuyos] = origine;
+		nbPuyos++;
+		
+		minI = Math.min(minI, i);
+		maxI = Math.max(maxI, i);
+		minJ = Math.min(minJ, j);
+		maxJ = Math.max(maxJ, j);
+	}
+	
+	/**
+	 * Retourne l'emplacement d'origine dans la forme de la pice du puyo
+	 * situ dans l'emplacement s.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 * @return l'emplacement d'origine du puyo.
+	 */
+	int getOrigine(int s)
+	{
+		return origines[s];
+	}
+	
+	/**
+	 * Retourne la plus petite des coordonnes fournies (lignes ou colonnes)
+	 * parmi celles des puyos de la pice, Integer.MAX_VALUE si la pice
+	 * est vide.
+	 * @param coordonnees les lignes ou les colonnes des puyos.
+	 * @return la coordonne minimale.
+	 */
+	private int minimum(int[] coordonnees)
+	{
+		int min = Integer.MAX_VALUE;
+		
+		for (int s=0; s<nbPuyos; s++)
 		{
-			if (minI > p.x)
-				minI = p.x;
+			if (min > coordonnees[s])
+				min = coordonnees[s];
 		}
 		
+		return min;
+	}
+	
+	/**
+	 * Retourne la plus grande des coordonnes fournies (lignes ou colonnes)
+	 * parmi celles des puyos de la pice, Integer.MIN_VALUE si la pice
+	 * est vide.
+	 * @param coordonnees les lignes ou les colonnes des puyos.
+	 * @return la coordonne maximale.
+	 */
+	private int maximum(int[] coordonnees)
+	{
+		int max = Integer.MIN_VALUE;
+		
+		for (int s=0; s<nbPuyos; s++)
+		{
+			if (max < coordonnees[s])
+				max = coordonnees[s];
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * Retourne la coordonne de la ligne minimale (la plus haute dans le
+	 * plateau de jeu) de la pice.
+	 * @return la coordonne dsignant la ligne minimale de la pice.
+	 */
+	public int getMinI()
+	{
 		return minI;
 	}
 	
@@ -137,14 +441,6 @@ public class Piece extends HashMap<Puyo, Point>
 	 */
 	public int getMaxI()
 	{
-		int maxI = Integer.MIN_VALUE;
-		
-		for (Point p : this.values())
-		{
-			if (maxI < p.x)
-				maxI = p.x;
-		}
-		
 		return maxI;
 	}
 	
@@ -155,14 +451,6 @@ public class Piece extends HashMap<Puyo, Point>
 	 */
 	public int getMinJ()
 	{
-		int minJ = Integer.MAX_VALUE;
-		
-		for (Point p : this.values())
-		{
-			if (minJ > p.y)
-				minJ = p.y;
-		}
-		
 		return minJ;
 	}
 	
@@ -173,34 +461,106 @@ public class Piece extends HashMap<Puyo, Point>
 	 */
 	public int getMaxJ()
 	{
-		int maxJ = Integer.MIN_VALUE;
+		return maxJ;
+	}
 		
-		for (Point p : this.values())
+	/**
+	 * Permet de mettre  jour la pice aprs une translation horizontale dans le
+	 * plateau de jeu dans le sens indiqu, sans effectuer d'allocation.
+	 * @param direction la direction de la translation (GAUCHE ou DROITE).
+	 */
+	public void decaler(int direction)
+	{
+		for (int s=0; s<nbPuyos; s++)
 		{
-			if (maxJ < p.y)
-				maxJ = p.y;
+			colonnes[s] += direction;
 		}
 		
-		return maxJ;
+		minJ += direction;
+		maxJ += direction;
 	}
 	
 	/**
-	 * Permet de mettre  jour la pice aprs une translation verticale dans le
-	 * plateau de jeu dans le sens indiqu.
-	 * Retourne une copie de la pice telle qu'elle tait avant la transformation.
+	 * Permet de mettre  jour la pice aprs une translation horizontale dans le
+	 * plateau de jeu dans le sens indiqu, sans effectuer d'allocation.
+	 * Retourne la pice elle-mme, dj dplace : aucune copie de la pice
+	 * telle qu'elle tait avant la transformation n'est plus effectue.
 	 * @param direction la direction de la translation (GAUCHE ou DROITE).
-	 * @return une copie de la pice telle qu'elle tait avant la transformation
+	 * @return la pice dplace.
+	 * @deprecated remplace par decaler, qui effectue la mme translation.
 	 */
+	@Deprecated
 	public Piece translationHorizontale(int direction)
 	{
-		Piece anciennePiece = (Piece) this.clone();
+		decaler(direction);
 		
-		for (Point p : this.values())
+		return this;
+	}
+	
+	/**
+	 * Retourne l'orientation de la pice, c'est--dire le nombre de rotations
+	 * horaires de 90 la sparant de sa position initiale (modulo NB_ORIENTATIONS).
+	 * @return l'orientation de la pice.
+	 */
+	public int getOrientation()
+	{
+		return orientation;
+	}
+	
+	/**
+	 * Retourne la ligne qu'occuperait le puyo de l'emplacement s aprs une
+	 * rotation de la pice de 90 dans le sens indiqu autour de son pivot.
+	 * Le pivot doit appartenir  la pice.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 * @param sens le sens de la rotation (1 pour horaire, -1 pour antihoraire).
+	 * @param pivot l'emplacement du pivot de la pice.
+	 * @return la ligne du puyo aprs la rotation.
+	 */
+	public int getLigneApresRotation(int s, int sens, int pivot)
+	{
+		return lignes[pivot] + DECALAGES[forme][(orientation+sens) & (NB_ORIENTATIONS-1)][origines[s]][0];
+	}
+	
+	/**
+	 * Retourne la colonne qu'occuperait le puyo de l'emplacement s aprs une
+	 * rotation de la pice de 90 dans le sens indiqu autour de son pivot.
+	 * Le pivot doit appartenir  la pice.
+	 * @param s l'emplacement considr (entre 0 et getNbPuyos()-1).
+	 * @param sens le sens de la rotation (1 pour horaire, -1 pour antihoraire).
+	 * @param pivot l'emplacement du pivot de la pice.
+	 * @return la colonne du puyo aprs la rotation.
+	 */
+	public int getColonneApresRotation(int s, int sens, int pivot)
+	{
+		return colonnes[pivot] + DECALAGES[forme][(orientation+sens) & (NB_ORIENTATIONS-1)][origines[s]][1];
+	}
+	
+	/**
+	 * Permet de mettre  jour la pice aprs une rotation de 90 dans le sens
+	 * indiqu autour de son pivot, sans vrification ni allocation.
+	 * Le pivot doit appartenir  la pice.
+	 * @param sens le sens de la rotation (1 pour horaire, -1 pour antihoraire).
+	 * @param pivot l'emplacement du pivot de la pice.
+	 */
+	public void tourner(int sens, int pivot)
+	{
+		int[][] decalages = DECALAGES[forme][(orientation+sens) & (NB_ORIENTATIONS-1)];
+		int pi = lignes[pivot], pj = colonnes[pivot];
+		
+		minI = minJ = Integer.MAX_VALUE;
+		maxI = maxJ = Integer.MIN_VALUE;
+		for (int s=0; s<nbPuyos; s++) // Les coordonnes extrmes sont calcules au fur et  mesure.
 		{
-			p.y += direction;
+			lignes[s] = pi + decalages[origines[s]][0];
+			colonnes[s] = pj + decalages[origines[s]][1];
+			
+			minI = Math.min(minI, lignes[s]);
+			maxI = Math.max(maxI, lignes[s]);
+			minJ = Math.min(minJ, colonnes[s]);
+			maxJ = Math.max(maxJ, colonnes[s]);
 		}
 		
-		return anciennePiece;
+		orientation = (orientation+sens) & (NB_ORIENTATIONS-1);
 	}
 	
 	/**
@@ -212,6 +572,16 @@ public class Piece extends HashMap<Puyo, Point>
 		return pivot;
 	}
 	
+	/**
+	 * Retourne l'emplacement du puyo servant de pivot pour les rotations
+	 * de la pice ou -1 s'il n'appartient plus  la pice.
+	 * @return l'emplacement du puyo pivot ou -1.
+	 */
+	public int getEmplacementPivot()
+	{
+		return chercher(pivot);
+	}
+	
 	/**
 	 * Retourne les coordonnes dans le plateau de jeu du puyo servant
 	 * de pivot pour les rotations de la pice.
@@ -238,4 +608,137 @@ public class Piece extends HashMap<Puyo, Point>
 	{
 		cassee = true;
 	}
+	
+	/**
+	 * Permet de dfinir le puyo servant de pivot pour les rotations de la pice.
+	 * @param pivot le puyo pivot.
+	 */
+	void setPivot(Puyo pivot)
+	{
+		this.pivot = pivot;
+	}
+	
+	/**
+	 * Retourne le nombre de puyos de la pice.
+	 * @return le nombre de puyos de la pice.
+	 */
+	public int size()
+	{
+		return nbPuyos;
+	}
+	
+	/**
+	 * Retourne vrai si la pice contient le puyo fourni.
+	 * @param puyo le puyo recherch.
+	 * @return un boolen indiquant si la pice contient le puyo.
+	 */
+	public boolean containsKey(Object puyo)
+	{
+		return chercher(puyo) >= 0;
+	}
+	
+	/**
+	 * Retourne une copie des coordonnes du puyo fourni ou null s'il
+	 * n'appartient pas  la pice.
+	 * @param puyo le puyo recherch.
+	 * @return les coordonnes du puyo ou null.
+	 */
+	public Point get(Object puyo)
+	{
+		int s = chercher(puyo);
+		
+		return (s < 0) ? null : new Point(lignes[s], colonnes[s]);
+	}
+	
+	/**
+	 * Permet de modifier les coordonnes d'un puyo de la pice ou d'ajouter
+	 * un puyo  la pice.
+	 * @param puyo le puyo considr.
+	 * @param point les coordonnes du puyo.
+	 * @return les anciennes coordonnes du puyo ou null s'il a t ajout.
+	 */
+	public Point put(Puyo puyo, Point point)
+	{
+		int s = chercher(puyo);
+		Point ancien = null;
+		
+		if (s < 0)
+		{
+			ajouterPuyo(puyo, point.x, point.y);
+		}
+		else
+		{
+			ancien = new Point(lignes[s], colonnes[s]);
+			setPosition(s, point.x, point.y);
+		}
+		
+		return ancien;
+	}
+	
+	/**
+	 * Permet de retirer un puyo de la pice.
+	 * @param puyo le puyo  retirer.
+	 * @return les coordonnes du puyo retir ou null s'il n'appartenait pas  la pice.
+	 */
+	public Point remove(Object puyo)
+	{
+		int s = chercher(puyo);
+		
+		if (s < 0)
+			return null;
+		
+		Point ancien = new Point(lignes[s], colonnes[s]);
+		retirer(s);
+		
+		return ancien;
+	}
+	
+	/**
+	 * Retourne une vue de la pice sous la forme d'un ensemble d'associations
+	 * entre les puyos et des copies de leurs coordonnes.
+	 * @return l'ensemble des associations de la pice.
+	 */
+	public Set<Map.Entry<Puyo, Point>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<Puyo, Point>>()
+		{
+			public int size()
+			{
+				return nbPuyos;
+			}
+			
+			public Iterator<Map.Entry<Puyo, Point>> iterator()
+			{
+				return new Iterator<Map.Entry<Puyo, Point>>()
+				{
+					/** L'emplacement du prochain puyo */
+					private int suivant = 0;
+					
+					public boolean hasNext()
+					{
+						return suivant < nbPuyos;
+					}
+					
+					public Map.Entry<Puyo, Point> next()
+					{
+						if (suivant >= nbPuyos)
+							throw new NoSuchElementException();
+						
+						Map.Entry<Puyo, Point> paire = new AbstractMap.SimpleImmutableEntry<Puyo, Point>(puyos[suivant], new Point(lignes[suivant], colonnes[suivant]));
+						suivant++;
+						
+						return paire;
+					}
+					
+					public void remove()
+					{
+						if (suivant == 0)
+							throw new IllegalStateException();
+						
+						retirer(--suivant);
+					}
+				};
+			}
+		};
+	}
 }
\ No newline at end of file
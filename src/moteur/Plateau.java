@@ -1,13 +1,16 @@
 package moteur;
 
 import java.awt.Color;
-import java.awt.Point;
-import java.util.ArrayList;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * Classe reprsentant le plateau de jeu de 12 lignes sur 6 colonnes et
- * permettant la gestion des actions sur une pice dans le plateau.
+ * Classe reprsentant le plateau de jeu, de 12 lignes visibles sur 6 colonnes
+ * par dfaut, et permettant la gestion des actions sur une pice dans le plateau.
+ * Les dimensions peuvent tre choisies  la cration du plateau (jusqu'
+ * LARGEUR_MAX colonnes sur HAUTEUR_MAX lignes), les LIGNES_CACHEES premires
+ * lignes restant toujours hors de la zone visible. La destruction des blocs,
+ * la gravit et la pose des puyos ne parcourent que les cases concernes, leur
+ * cot ne dpend donc pas de la taille du plateau.
  * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
  *
  */
@@ -21,62 +24,622 @@ public class Plateau implements Cloneable
 	public static final int HORAIRE = 1;
 	/** Constante dsignant une rotation dans le sens antihoraire */
 	public static final int ANTIHORAIRE = -1;
-	/** Constante dsignant la largueur du plateau de jeu dans la prsentation interne */
+	/** Constante dsignant la largueur par dfaut du plateau de jeu dans la prsentation interne */
 	public static final int LARGEUR = 6;
-	/** Constante dsignant la hauteur du plateau de jeu dans la prsentation interne */
+	/** Constante dsignant la hauteur par dfaut du plateau de jeu dans la prsentation interne */
 	public static final int HAUTEUR = 15;
+	/** Constante dsignant le nombre de lignes situes au-dessus de la zone visible du plateau */
+	public static final int LIGNES_CACHEES = 3;
+	/** Constante dsignant la largeur minimale d'un plateau, ncessaire  l'apparition des pices */
+	public static final int LARGEUR_MIN = 4;
+	/** Constante dsignant la largeur maximale d'un plateau */
+	public static final int LARGEUR_MAX = 64;
+	/** Constante dsignant la hauteur minimale d'un plateau */
+	public static final int HAUTEUR_MIN = LIGNES_CACHEES + 1;
+	/** Constante dsignant la hauteur maximale d'un plateau */
+	public static final int HAUTEUR_MAX = 256;
 	/** Constante indiquant que le jeu est perdu */
 	public static final int PERDU = -1;
 	/** Constante indiquant que tous les puyos de la pice sont bloqus */
 	public static final int PIECE_VIDE = 0;
 	/** Constante indiquant que la pice comporte toujours des puyos non bloqus */
 	public static final int PIECE_NON_VIDE = 1;
-	/** Tableau  deux dimensions reprsentant le plateau de jeu */
-	private Puyo[][] tabPlateau;
-	/** Les puyos  vrifier pour la destruction ventuelle de blocs */
-	private ArrayList<Point> derniersPuyos;
+	/** Valeur d'une case vide */
+	private static final byte VIDE = 0;
+	/** Masque permettant d'extraire d'une case l'indice de la couleur du puyo augment de 1 */
+	private static final int MASQUE_COULEUR = 0x07;
+	/** Valeur des cases de la bordure, qui ne correspond  aucune couleur de puyo */
+	private static final byte BORD = MASQUE_COULEUR;
+	/** Bit indiquant que le puyo de la case appartient  la pice en chute */
+	private static final int CHUTE = 0x08;
+	/** Bit du contenu brut d'une case indiquant que le puyo appartient  la pice en chute (voir lireCase) */
+	static final int CHUTE_CASE = CHUTE;
+	/** Valeur indiquant qu'aucune case d'une colonne n'a t vide */
+	private static final int AUCUN_TROU = -1;
+	/** Constante servant de point de dpart au calcul des cls de l'empreinte */
+	private static final long GRAINE_EMPREINTE = 0x5DEECE66DL;
+	/** Valeur du parent d'une case n'appartenant  aucun bloc */
+	private static final int HORS_BLOC = -1;
+	/** Constante dsignant un puyo de la pice dont le dplacement n'est pas  noter */
+	private static final int AUCUN_DEPART = -1;
+	/** La largeur du plateau de jeu */
+	private final int largeur;
+	/** La hauteur du plateau de jeu */
+	private final int hauteur;
+	/** Largeur d'une ligne du tableau interne, bordure comprise */
+	private final int largeurInterne;
+	/** Indice dans le tableau interne de la premire case de la zone visible */
+	private final int premiereCaseVisible;
+	/** Dcalages dans le tableau interne permettant d'atteindre les quatre voisins d'une case */
+	private final int[] voisins;
+	/** Tableau  une dimension reprsentant le plateau de jeu entour d'une bordure,
+	 * chaque case contenant la couleur de son puyo et son appartenance  la pice en chute */
+	private byte[] cases;
+	/** Les cases  vrifier pour la destruction ventuelle de blocs, le bit k%64 du mot k/64 correspondant  la case d'indice k du tableau interne */
+	private long[] casesModifiees;
+	/** Rsum des cases  vrifier, le bit n%64 du mot n/64 indiquant que le mot n de casesModifiees n'est pas nul */
+	private long[] motsModifies;
+	/** Le nombre de puyos poss dans chaque colonne du plateau */
+	private int[] hauteurs;
+	/** Pour chaque colonne, la ligne de la plus basse case vide depuis la dernire application de la gravit
+	 * ou AUCUN_TROU, toutes les cases situes en dessous tant occupes */
+	private int[] trous;
+	/** Pour chaque case pose de la zone visible, l'indice d'une case du mme bloc se rapprochant
+	 * du reprsentant du bloc (structure d'ensembles disjoints), HORS_BLOC pour une case  rinsrer */
+	private int[] parents;
+	/** Pour chaque reprsentant d'un bloc, le nombre de puyos du bloc */
+	private int[] tailles;
+	/** Pour chaque case d'un bloc, l'indice de la case suivante du bloc (liste circulaire des puyos du bloc) */
+	private int[] suivants;
+	/** Les indices des cases  rinsrer dans les blocs aprs l'application de la gravit */
+	private int[] aReinserer;
+	/** Le numro de passe de destruction  laquelle chaque bloc a t examin pour la dernire fois */
+	private int[] visites;
+	/** Le numro de la passe de destruction courante */
+	private int passe;
+	/** Le nombre de blocs dtruits lors de la dernire passe de destruction */
+	private int nbBlocsDetruits;
+	/** L'empreinte de Zobrist de l'tat du plateau, combinaison par ou exclusif des cls de toutes les cases occupes */
+	private long empreinte;
+	/** Les colonnes modifies depuis le dernier instantan, le bit j correspondant  la colonne j */
+	private long colonnesModifiees;
+	/** Le dernier instantan du plateau, dont les colonnes non modifies sont partages avec le suivant */
+	private Instantane dernierInstantane;
+	/** Les modifications du battement courant, null si elles ne sont pas suivies */
+	private Modifications modifications;
+	/** Les cases occupes par les puyos de la pice avant un dplacement, utilises pour noter ce dplacement */
+	private int[] departs;
 	
 	/**
-	 * Cre un nouveau plateau de jeu vide.
+	 * Cre un nouveau plateau de jeu vide aux dimensions par dfaut.
 	 */
 	public Plateau()
 	{
-		tabPlateau = new Puyo[HAUTEUR][LARGEUR];
-		derniersPuyos = new ArrayList<Point>();
+		this(LARGEUR, HAUTEUR);
 	}
 	
 	/**
-	 * Retourne une chaine de caractre reprsentant le tableau de jeu.
+	 * Cre un nouveau plateau de jeu vide de largeur colonnes sur hauteur
+	 * lignes, lignes caches comprises.
+	 * @param largeur le nombre de colonnes du plateau (entre LARGEUR_MIN et LARGEUR_MAX).
+	 * @param hauteur le nombre de lignes du plateau (entre HAUTEUR_MIN et HAUTEUR_MAX).
+	 * @throws IllegalArgumentException si les dimensions ne sont pas valides.
+	 */
+	public Plateau(int largeur, int hauteur)
+	{
+		if (largeur < LARGEUR_MIN || largeur > LARGEUR_MAX || hauteur < HAUTEUR_MIN || hauteur > HAUTEUR_MAX)
+			throw new IllegalArgumentException("Dimensions de plateau invalides : " + largeur + "x" + hauteur);
+		
+		this.largeur = largeur;
+		this.hauteur = hauteur;
+		largeurInterne = largeur + 2;
+		premiereCaseVisible = (LIGNES_CACHEES+1) * largeurInterne;
+		voisins = new int[] {largeurInterne, -largeurInterne, 1, -1};
+		
+		cases = new byte[largeurInterne * (hauteur + 2)];
+		casesModifiees = new long[(cases.length + 63) >>> 6];
+		motsModifies = new long[(casesModifiees.length + 63) >>> 6];
+		hauteurs = new int[largeur];
+		trous = new int[largeur];
+		Arrays.fill(trous, AUCUN_TROU);
+		parents = new int[cases.length];
+		tailles = new int[cases.length];
+		suivants = new int[cases.length];
+		aReinserer = new int[2 * cases.length];
+		visites = new int[cases.length];
+		passe = 0;
+		nbBlocsDetruits = 0;
+		empreinte = 0;
+		colonnesModifiees = 0;
+		dernierInstantane = null;
+		modifications = null;
+		departs = new int[Piece.NB_MAX_PUYOS];
+		
+		// On place la bordure autour du plateau
+		for (int k=0; k<cases.length; k++)
+		{
+			if (k < largeurInterne || k >= cases.length - largeurInterne
+					|| k % largeurInterne == 0 || k % largeurInterne == largeurInterne - 1)
+				cases[k] = BORD;
+		}
+	}
+	
+	/**
+	 * Retourne l'indice dans le tableau interne de la case (i,j) du plateau.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return l'indice de la case dans le tableau interne.
+	 */
+	private int indice(int i, int j)
+	{
+		return (i+1) * largeurInterne + j + 1;
+	}
+	
+	/**
+	 * Retourne la ligne de la case d'indice k du tableau interne.
+	 * @param k l'indice de la case dans le tableau interne.
+	 * @return la coordonne dsignant la ligne de la case.
+	 */
+	private int ligne(int k)
+	{
+		return k / largeurInterne - 1;
+	}
+	
+	/**
+	 * Retourne la colonne de la case d'indice k du tableau interne.
+	 * @param k l'indice de la case dans le tableau interne.
+	 * @return la coordonne dsignant la colonne de la case.
+	 */
+	private int colonne(int k)
+	{
+		return k % largeurInterne - 1;
+	}
+	
+	/**
+	 * Permet de modifier le contenu de la case d'indice k du tableau interne
+	 * en mettant  jour l'empreinte du plateau et les colonnes modifies.
+	 * Si les modifications sont suivies, les liens de la case et de ses
+	 * voisines sont mmoriss avant leur premire modification du battement.
+	 * @param k l'indice de la case considre dans le tableau interne.
+	 * @param valeur le nouveau contenu de la case.
+	 */
+	private void ecrire(int k, int valeur)
+	{
+		if (modifications != null)
+			suivreLiens(k);
+		
+		empreinte ^= cle(k, cases[k]) ^ cle(k, valeur);
+		cases[k] = (byte) valeur;
+		colonnesModifiees |= 1L << colonne(k);
+	}
+	
+	/**
+	 * Retourne la cl de Zobrist correspondant  la case d'indice k du tableau
+	 * interne lorsqu'elle a le contenu fourni. Les cls sont obtenues par un
+	 * mlange des bits de l'indice et du contenu plutt que lues dans une table,
+	 * ce qui convient  toutes les dimensions de plateau. La cl d'une case
+	 * vide est nulle.
+	 * @param k l'indice de la case considre dans le tableau interne.
+	 * @param valeur le contenu de la case.
+	 * @return la cl de la case.
+	 */
+	private static long cle(int k, int valeur)
+	{
+		if (valeur == VIDE)
+			return 0;
+		
+		long z = (((long) k << 4) | valeur) * 0x9E3779B97F4A7C15L + GRAINE_EMPREINTE;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * Retourne l'empreinte de Zobrist de l'tat du plateau (contenu de toutes
+	 * les cases, pice en chute comprise). Elle est maintenue  chaque
+	 * modification du plateau et s'obtient donc en temps constant : deux
+	 * plateaux de mmes dimensions dans le mme tat ont la mme empreinte.
+	 * @return l'empreinte du plateau.
+	 */
+	public long getEmpreinte()
+	{
+		return empreinte;
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant le tableau de jeu, dans
+	 * le format texte canonique qui peut tre relu (voir CodecPlateau).
 	 * @return une chaine de caractre reprsentant le tableau de jeu.
 	 */
 	public String toString()
 	{
-		StringBuilder s = new StringBuilder();
+		return CodecPlateau.ecrireTexte(this);
+	}
+	
+	/**
+	 * Retourne une copie du plateau, indpendante du plateau original,
+	 * y compris les cases  vrifier lors de la prochaine destruction de blocs.
+	 * @return une copie du plateau.
+	 */
+	protected Object clone()
+	{
+		Plateau clone = new Plateau(largeur, hauteur);
+		System.arraycopy(this.cases, 0, clone.cases, 0, cases.length);
+		System.arraycopy(this.parents, 0, clone.parents, 0, cases.length);
+		System.arraycopy(this.tailles, 0, clone.tailles, 0, cases.length);
+		System.arraycopy(this.suivants, 0, clone.suivants, 0, cases.length);
+		System.arraycopy(this.hauteurs, 0, clone.hauteurs, 0, largeur);
+		System.arraycopy(this.trous, 0, clone.trous, 0, largeur);
+		System.arraycopy(this.casesModifiees, 0, clone.casesModifiees, 0, casesModifiees.length);
+		System.arraycopy(this.motsModifies, 0, clone.motsModifies, 0, motsModifies.length);
+		clone.empreinte = empreinte;
+		clone.colonnesModifiees = colonnesModifiees;
+		clone.dernierInstantane = dernierInstantane;
 		
-		for (int i=0; i<HAUTEUR; i++)
+		return clone;
+	}
+	
+	/**
+	 * Permet de recopier dans ce plateau l'tat complet du plateau fourni,
+	 * y compris les cases  vrifier lors de la prochaine
+	 * destruction de blocs. Les deux plateaux doivent avoir les mmes dimensions.
+	 * Si les modifications sont suivies, chaque case dont le contenu change
+	 * est note comme vide puis pose.
+	 * @param plateau le plateau  recopier.
+	 * @throws IllegalArgumentException si les dimensions des plateaux diffrent.
+	 */
+	public void copier(Plateau plateau)
+	{
+		if (plateau.largeur != largeur || plateau.hauteur != hauteur)
+			throw new IllegalArgumentException("Les deux plateaux n'ont pas les mmes dimensions");
+		
+		for (int k=0; k<cases.length && modifications != null; k++)
 		{
-			for (int j=0; j<LARGEUR; j++)
+			if (cases[k] != plateau.cases[k])
 			{
-				s.append(tabPlateau[i][j]);
-				s.append(" ");
+				suivreLiens(k);
+				if (cases[k] != VIDE)
+					noter(Modifications.VIDEE, k, cases[k]);
+				if (plateau.cases[k] != VIDE)
+					noter(Modifications.POSEE, k, plateau.cases[k]);
 			}
-			s.append("\n");
 		}
 		
-		return s.toString();
+		System.arraycopy(plateau.cases, 0, cases, 0, cases.length);
+		System.arraycopy(plateau.parents, 0, parents, 0, cases.length);
+		System.arraycopy(plateau.tailles, 0, tailles, 0, cases.length);
+		System.arraycopy(plateau.suivants, 0, suivants, 0, cases.length);
+		System.arraycopy(plateau.hauteurs, 0, hauteurs, 0, largeur);
+		System.arraycopy(plateau.trous, 0, trous, 0, largeur);
+		System.arraycopy(plateau.casesModifiees, 0, casesModifiees, 0, casesModifiees.length);
+		System.arraycopy(plateau.motsModifies, 0, motsModifies, 0, motsModifies.length);
+		empreinte = plateau.empreinte;
+		colonnesModifiees = -1L >>> (64 - largeur); // Toutes les colonnes ont pu changer
 	}
 	
 	/**
-	 * Retourne une copie du plateau (les puyos placs dans le plateau
-	 * ne sont par contre pas des copies).
-	 * @return une copie du plateau.
+	 * Retourne un instantan du contenu actuel du plateau, pice en chute
+	 * comprise. Seules les colonnes modifies depuis l'instantan prcdent
+	 * sont recopies, les autres sont partages avec lui ; si rien n'a t
+	 * modifi, l'instantan prcdent est retourn.
+	 * @return l'instantan du plateau.
 	 */
-	protected Object clone()
+	public Instantane getInstantane()
 	{
-		Plateau clone = new Plateau();
-		clone.tabPlateau = this.tabPlateau.clone();
+		byte[][] colonnes;
+		byte[] colonne;
 		
-		return clone;
+		if (dernierInstantane != null && colonnesModifiees == 0)
+			return dernierInstantane;
+		
+		colonnes = new byte[largeur][];
+		
+		for (int j=0; j<largeur; j++)
+		{
+			if (dernierInstantane != null && (colonnesModifiees & (1L << j)) == 0)
+				colonnes[j] = dernierInstantane.getColonne(j);
+			else
+			{
+				colonne = new byte[hauteur];
+				for (int i=0, k=indice(0, j); i<hauteur; i++, k+=largeurInterne)
+					colonne[i] = cases[k];
+				colonnes[j] = colonne;
+			}
+		}
+		
+		colonnesModifiees = 0;
+		dernierInstantane = new Instantane((dernierInstantane == null) ? 1 : dernierInstantane.getVersion() + 1, colonnes, hauteur);
+		
+		return dernierInstantane;
+	}
+	
+	/**
+	 * Permet de remettre le plateau dans l'tat de l'instantan fourni, pris
+	 * sur ce plateau ou sur un plateau de mmes dimensions : le plateau est
+	 * reconstruit case par case, puis l'instantan devient son dernier
+	 * instantan (sous un nouveau numro de version) afin que les instantans
+	 * suivants continuent de partager avec lui leurs colonnes non modifies.
+	 * Si les modifications sont suivies, les cases changes sont notes.
+	 * @param instantane l'instantan  restaurer.
+	 * @throws IllegalArgumentException si les dimensions de l'instantan diffrent.
+	 */
+	public void restaurer(Instantane instantane)
+	{
+		Plateau plateau;
+		byte[][] colonnes;
+		
+		if (instantane.getLargeur() != largeur || instantane.getHauteur() != hauteur)
+			throw new IllegalArgumentException("L'instantan n'a pas les dimensions du plateau");
+		
+		plateau = new Plateau(largeur, hauteur);
+		colonnes = new byte[largeur][];
+		
+		for (int j=0; j<largeur; j++)
+		{
+			colonnes[j] = instantane.getColonne(j);
+			for (int i=0; i<hauteur; i++)
+				plateau.remplirCase(i, j, colonnes[j][i]);
+		}
+		plateau.terminerReconstruction();
+		
+		copier(plateau);
+		colonnesModifiees = 0; // Le contenu est exactement celui de l'instantan
+		dernierInstantane = new Instantane((dernierInstantane == null) ? 1 : dernierInstantane.getVersion() + 1, colonnes, hauteur);
+	}
+	
+	/**
+	 * Permet de suivre les modifications du plateau :  partir de cet appel,
+	 * chaque opration sur le plateau ajoute ses modifications  l'ensemble
+	 * des modifications du battement courant (voir getModifications).
+	 * Sans cet appel, aucune modification n'est enregistre.
+	 */
+	public void suivreModifications()
+	{
+		if (modifications == null)
+			modifications = new Modifications(cases.length);
+	}
+	
+	/**
+	 * Permet de commencer un nouveau battement : les modifications du
+	 * battement prcdent sont oublies. Le moteur de jeu appelle cette
+	 * mthode au dbut de chaque tape.
+	 */
+	public void viderModifications()
+	{
+		if (modifications != null)
+			modifications.vider();
+	}
+	
+	/**
+	 * Retourne les modifications apportes au plateau depuis le dbut du
+	 * battement courant, les modifications de liens tant calcules lors de
+	 * cet appel  partir des seules cases modifies et de leurs voisines.
+	 * L'ensemble retourn est rutilis d'un battement  l'autre.
+	 * @return les modifications du battement ou null si les modifications
+	 * ne sont pas suivies.
+	 */
+	public Modifications getModifications()
+	{
+		int k, liens;
+		
+		if (modifications != null && !modifications.liensCalcules())
+		{
+			for (int n=0; n<modifications.getNbCasesSuivies(); n++)
+			{
+				k = modifications.getCaseSuivie(n);
+				liens = liens(k);
+				
+				if (liens != modifications.getLiensInitiaux(k))
+					modifications.ajouterLiens(ligne(k), colonne(k), liens);
+			}
+			
+			modifications.terminerLiens();
+		}
+		
+		return modifications;
+	}
+	
+	/**
+	 * Permet de mmoriser les liens de la case d'indice k et de ses voisines
+	 * qui ne l'ont pas encore t pendant le battement, avant que la case ne
+	 * soit modifie : seuls leurs liens peuvent changer avec elle.
+	 * @param k l'indice de la case sur le point d'tre modifie.
+	 */
+	private void suivreLiens(int k)
+	{
+		int voisin;
+		
+		if (modifications.doitMemoriser(k))
+			modifications.memoriserLiens(k, liens(k));
+		
+		for (int d=0; d<voisins.length; d++)
+		{
+			voisin = k + voisins[d];
+			
+			if (cases[voisin] != BORD && modifications.doitMemoriser(voisin))
+				modifications.memoriserLiens(voisin, liens(voisin));
+		}
+	}
+	
+	/**
+	 * Permet de noter, si les modifications sont suivies, une modification
+	 * de la case d'indice k.
+	 * @param type le type de la modification (Modifications.POSEE ou VIDEE).
+	 * @param k l'indice de la case dans le tableau interne.
+	 * @param valeur le nouveau contenu de la case pose ou l'ancien contenu de la case vide.
+	 */
+	private void noter(int type, int k, int valeur)
+	{
+		if (modifications != null)
+			modifications.ajouter(type, ligne(k), colonne(k), valeur);
+	}
+	
+	/**
+	 * Permet de noter, si les modifications sont suivies, le dplacement
+	 * du puyo de la case d'indice depart vers la case d'indice arrivee.
+	 * @param depart l'indice de la case de dpart dans le tableau interne.
+	 * @param arrivee l'indice de la case d'arrive dans le tableau interne.
+	 */
+	private void noterDeplacement(int depart, int arrivee)
+	{
+		if (modifications != null)
+			modifications.ajouter(Modifications.DEPLACEMENT, ligne(arrivee), colonne(arrivee),
+					Modifications.coder(ligne(depart), colonne(depart)));
+	}
+	
+	/**
+	 * Permet de noter, si les modifications sont suivies, l'apparition ou
+	 * la disparition de chacun des puyos de la pice fournie.
+	 * @param type le type de la modification (Modifications.POSEE ou VIDEE).
+	 * @param piece la pice considre.
+	 */
+	private void noterPiece(int type, Piece piece)
+	{
+		for (int s=0; s<piece.getNbPuyos() && modifications != null; s++)
+		{
+			noter(type, indice(piece.getLigne(s), piece.getColonne(s)), CHUTE | (piece.getPuyo(s).getIndiceCouleur() + 1));
+		}
+	}
+	
+	/**
+	 * Permet de mmoriser les cases occupes par les puyos de la pice
+	 * fournie avant son dplacement.
+	 * @param piece la pice sur le point d'tre dplace.
+	 */
+	private void memoriserDeparts(Piece piece)
+	{
+		for (int s=0; s<piece.getNbPuyos(); s++)
+		{
+			departs[s] = indice(piece.getLigne(s), piece.getColonne(s));
+		}
+	}
+	
+	/**
+	 * Permet de noter, si les modifications sont suivies, les dplacements
+	 * des puyos de la pice fournie depuis les cases mmorises par
+	 * memoriserDeparts. Les dplacements sont nots dans un ordre tel qu'un
+	 * puyo n'arrive jamais dans une case qu'un autre puyo n'a pas encore
+	 * quitte, ce qui est toujours possible pour une translation ou une
+	 * rotation d'un quart de tour autour du pivot.
+	 * @param piece la pice dplace.
+	 */
+	private void noterDeplacementsPiece(Piece piece)
+	{
+		int restants = 0, arrivee;
+		boolean libre;
+		
+		if (modifications == null)
+			return;
+		
+		for (int s=0; s<piece.getNbPuyos(); s++)
+		{
+			if (departs[s] == indice(piece.getLigne(s), piece.getColonne(s)))
+				departs[s] = AUCUN_DEPART; // Le puyo n'a pas boug (le pivot lors d'une rotation)
+			else
+				restants++;
+		}
+		
+		while (restants > 0)
+		{
+			for (int s=0; s<piece.getNbPuyos(); s++)
+			{
+				if (departs[s] != AUCUN_DEPART)
+				{
+					arrivee = indice(piece.getLigne(s), piece.getColonne(s));
+					libre = true;
+					
+					for (int t=0; t<piece.getNbPuyos(); t++)
+					{
+						if (departs[t] == arrivee)
+							libre = false;
+					}
+					
+					if (libre)
+					{
+						noterDeplacement(departs[s], arrivee);
+						departs[s] = AUCUN_DEPART;
+						restants--;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Retourne le contenu brut de la case (i,j) du plateau : 0 si la case
+	 * est vide, l'indice de la couleur du puyo augment de 1 sinon, auquel
+	 * s'ajoute le bit CHUTE_CASE si le puyo appartient  la pice en chute.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return le contenu brut de la case.
+	 */
+	int lireCase(int i, int j)
+	{
+		return cases[indice(i, j)];
+	}
+	
+	/**
+	 * Permet de remplir la case (i,j) d'un plateau vide en cours de
+	 * reconstruction avec le contenu brut fourni (voir lireCase). Un puyo
+	 * pos est compt dans la hauteur de sa colonne, insr dans les blocs
+	 * et marqu pour la prochaine destruction de blocs. Une fois toutes les
+	 * cases remplies, terminerReconstruction doit tre appele.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @param valeur le contenu brut de la case.
+	 * @throws IllegalArgumentException si le contenu n'est pas valide.
+	 */
+	void remplirCase(int i, int j, int valeur)
+	{
+		int k = indice(i, j), couleur = valeur & MASQUE_COULEUR;
+		
+		if ((valeur & ~(CHUTE | MASQUE_COULEUR)) != 0 || couleur > Puyo.NB_COULEURS || (valeur != VIDE && couleur == VIDE))
+			throw new IllegalArgumentException("Contenu de case invalide en (" + i + ", " + j + ") : " + valeur);
+		
+		ecrire(k, valeur);
+		if (valeur != VIDE)
+			noter(Modifications.POSEE, k, valeur);
+		
+		if (valeur != VIDE && (valeur & CHUTE) == 0)
+		{
+			hauteurs[j]++;
+			marquer(k);
+			insererDansBloc(k);
+		}
+	}
+	
+	/**
+	 * Permet de terminer la reconstruction d'un plateau rempli case par case :
+	 * dans chaque colonne o des puyos poss se trouvent au-dessus d'une case
+	 * vide, la plus basse de ces cases est enregistre pour que la prochaine
+	 * application de la gravit les fasse tomber. Les cases de la pice en
+	 * chute sont ignores : elles ne sont ni des trous ni des puyos poss.
+	 */
+	void terminerReconstruction()
+	{
+		int k, trou;
+		
+		for (int j=0; j<largeur; j++)
+		{
+			trous[j] = AUCUN_TROU;
+			trou = AUCUN_TROU; // La plus basse case de la colonne sans puyo pos
+			
+			for (int i=hauteur-1; i>=0 && trous[j] == AUCUN_TROU; i--)
+			{
+				k = indice(i, j);
+				
+				if ((cases[k] & CHUTE) != 0) // Les puyos de la pice en chute ne sont pas concerns par la gravit
+					continue;
+				
+				if (cases[k] == VIDE)
+				{
+					if (trou == AUCUN_TROU)
+						trou = i;
+				}
+				else if (trou != AUCUN_TROU) // Un puyo pos se trouve au-dessus du trou, il devra tomber
+					trous[j] = trou;
+			}
+		}
 	}
 	
 	/**
@@ -88,7 +651,7 @@ public class Plateau implements Cloneable
 	 */
 	public boolean estLibre(int i, int j)
 	{
-		return (tabPlateau[i][j] == null);
+		return (cases[indice(i, j)] == VIDE);
 	}
 	
 	/**
@@ -100,19 +663,160 @@ public class Plateau implements Cloneable
 	 */
 	public Color getCouleurPuyo(int i, int j)
 	{
-		return tabPlateau[i][j].getCouleur();
+		return Puyo.getCouleur(getIndiceCouleurPuyo(i, j));
+	}
+	
+	/**
+	 * Retourne l'indice de la couleur du puyo situ  la case (i,j) du plateau
+	 * parmi les couleurs possibles des puyos.
+	 * Cette mthode ne doit pas tre appele sur une case vide.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return l'indice de la couleur du puyo situ dans la case.
+	 */
+	public int getIndiceCouleurPuyo(int i, int j)
+	{
+		return (cases[indice(i, j)] & MASQUE_COULEUR) - 1;
 	}
 	
 	/**
-	 * Retourne le puyo situ  la case (i,j) du plateau ou null
-	 * si la case est vide.
+	 * Retourne un puyo reprsentant le contenu de la case (i,j) du plateau
+	 * (sa couleur et ses liens) ou null si la case est vide. Le puyo retourn
+	 * est une vue partage sur la case en lecture seule : modifier ses liens
+	 * lve une UnsupportedOperationException.
 	 * @param i la coordonne dsignant la ligne considre.
 	 * @param j la coordonne dsignant la colonne considre.
 	 * @return le puyo situ dans la case ou null si la case est vide.
 	 */
 	public Puyo getPuyo(int i, int j)
 	{
-		return tabPlateau[i][j];
+		int valeur = cases[indice(i, j)];
+		
+		if (valeur == VIDE)
+			return null;
+		
+		return Puyo.getVue((valeur & MASQUE_COULEUR) - 1, getLiens(i, j));
+	}
+	
+	/**
+	 * Retourne les liens du puyo situ  la case (i,j) du plateau, dduits
+	 * des cases voisines : le bit d'indice Puyo.HAUT (resp. DROITE, BAS,
+	 * GAUCHE) indique que le puyo voisin dans cette direction est de la mme
+	 * couleur. Seuls les puyos poss de la zone visible sont lis entre eux :
+	 * un puyo de la premire ligne visible (LIGNES_CACHEES) n'est donc jamais
+	 * li vers le haut, alors que celui de la ligne suivante l'est avec lui.
+	 * C'est le rsultat qu'obtenait l'ancienne version, dont le test i-1 > 3
+	 * ne concernait que le puyo pos en dernier, le lien vers le haut de la
+	 * case du dessous tant mis  jour lors de la pose du puyo situ au-dessus.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return les liens du puyo sous la forme d'un masque de 4 bits.
+	 */
+	public int getLiens(int i, int j)
+	{
+		return liens(indice(i, j));
+	}
+	
+	/**
+	 * Retourne les liens du puyo situ  la case d'indice k du tableau
+	 * interne (voir getLiens).
+	 * @param k l'indice de la case dans le tableau interne.
+	 * @return les liens du puyo sous la forme d'un masque de 4 bits.
+	 */
+	private int liens(int k)
+	{
+		int liens = 0;
+		
+		if (k < premiereCaseVisible || cases[k] == VIDE || (cases[k] & CHUTE) != 0)
+			return 0;
+		
+		// La case du dessus doit tre visible : pas de lien vers les lignes caches
+		if (k - largeurInterne >= premiereCaseVisible && cases[k-largeurInterne] == cases[k])
+			liens |= 1 << Puyo.HAUT;
+		if (cases[k+1] == cases[k])
+			liens |= 1 << Puyo.DROITE;
+		if (cases[k+largeurInterne] == cases[k])
+			liens |= 1 << Puyo.BAS;
+		if (cases[k-1] == cases[k])
+			liens |= 1 << Puyo.GAUCHE;
+		
+		return liens;
+	}
+	
+	/**
+	 * Retourne le nombre de colonnes du plateau.
+	 * @return la largeur du plateau.
+	 */
+	public int getLargeur()
+	{
+		return largeur;
+	}
+	
+	/**
+	 * Retourne le nombre de lignes du plateau, lignes caches comprises.
+	 * @return la hauteur du plateau.
+	 */
+	public int getHauteur()
+	{
+		return hauteur;
+	}
+	
+	/**
+	 * Retourne le nombre de puyos poss dans la colonne j du plateau.
+	 * Les puyos poss d'une colonne sont toujours empils  partir du bas
+	 * du plateau, sauf entre une destruction de blocs et l'application de
+	 * la gravit.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return le nombre de puyos poss dans la colonne.
+	 */
+	public int getHauteurColonne(int j)
+	{
+		return hauteurs[j];
+	}
+	
+	/**
+	 * Retourne la ligne sur laquelle s'arrterait un puyo tombant dans la
+	 * colonne j, c'est--dire la ligne juste au dessus des puyos poss de
+	 * la colonne. Le rsultat est infrieur  LIGNES_CACHEES si un puyo tombant dans
+	 * cette colonne serait bloqu hors de la zone de jeu.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return la ligne d'arrive d'un puyo tombant dans la colonne.
+	 */
+	public int getLigneArrivee(int j)
+	{
+		return hauteur - 1 - hauteurs[j];
+	}
+	
+	/**
+	 * Retourne vrai si la case (i,j) est dans le plateau et au-dessus des
+	 * puyos poss de sa colonne, c'est--dire si elle est libre ou occupe
+	 * par un puyo de la pice en chute.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return un booleen indiquant si un puyo de la pice peut occuper la case.
+	 */
+	private boolean estAccessible(int i, int j)
+	{
+		return j >= 0 && j < largeur && i <= getLigneArrivee(j);
+	}
+	
+	/**
+	 * Retourne le nombre de puyos du bloc auquel appartient le puyo pos
+	 * situ  la case (i,j) du plateau, sans parcourir le plateau.
+	 * Retourne 0 si la case est vide, hors de la zone visible ou occupe
+	 * par un puyo de la pice en chute.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return le nombre de puyos du bloc contenant la case.
+	 */
+	public int getTailleBloc(int i, int j)
+	{
+		int k = indice(i, j);
+		
+		if (!estDansBloc(k))
+			return 0;
+		
+		return tailles[trouverRepresentant(k)];
 	}
 	
 	/**
@@ -127,15 +831,35 @@ public class Plateau implements Cloneable
 		// On supprime l'ancienne pice si elle existait
 		if (anciennePiece != null)
 		{
-			for (Map.Entry<Puyo, Point> paire : anciennePiece.entrySet())
-			{
-				tabPlateau[paire.getValue().x][paire.getValue().y] = null;
-			}
+			effacer(anciennePiece);
+			noterPiece(Modifications.VIDEE, anciennePiece);
 		}
 		// On place la pice  son emplacement actuel
-		for (Map.Entry<Puyo, Point> paire : piece.entrySet())
+		placer(piece);
+		noterPiece(Modifications.POSEE, piece);
+	}
+	
+	/**
+	 * Permet de vider les cases du plateau occupes par la pice fournie.
+	 * @param piece la pice  retirer du plateau.
+	 */
+	private void effacer(Piece piece)
+	{
+		for (int s=0; s<piece.getNbPuyos(); s++)
+		{
+			ecrire(indice(piece.getLigne(s), piece.getColonne(s)), VIDE);
+		}
+	}
+	
+	/**
+	 * Permet de placer dans le plateau les puyos de la pice fournie.
+	 * @param piece la pice  placer dans le plateau.
+	 */
+	private void placer(Piece piece)
+	{
+		for (int s=0; s<piece.getNbPuyos(); s++)
 		{
-			tabPlateau[paire.getValue().x][paire.getValue().y] = paire.getKey();
+			ecrire(indice(piece.getLigne(s), piece.getColonne(s)), CHUTE | (piece.getPuyo(s).getIndiceCouleur() + 1));
 		}
 	}
 	
@@ -157,18 +881,19 @@ public class Plateau implements Cloneable
 	 */
 	public void translationHorizontale(int direction, Piece piece)
 	{
-		if (piece.getMaxI() > 2) // On attend que la pice apparaisse dans la zone de jeu avant d'autoriser son dplacement
+		if (piece.getMaxI() >= LIGNES_CACHEES) // On attend que la pice apparaisse dans la zone de jeu avant d'autoriser son dplacement
 		{
-			if(direction == GAUCHE)
-			{
-				if(piece.getMinJ() > 0 && tabPlateau[piece.getMaxI()][piece.getMinJ()-1] == null)
-					rafraichir(piece.translationHorizontale(direction), piece);
-			}
-			else
-			{
-				if(piece.getMaxJ() < LARGEUR-1 && tabPlateau[piece.getMaxI()][piece.getMaxJ()+1] == null)
-					rafraichir(piece.translationHorizontale(direction), piece);
+			for (int s=0; s<piece.getNbPuyos(); s++)
+			{ // Chaque puyo doit arriver au-dessus des puyos poss de la colonne voisine
+				if (!estAccessible(piece.getLigne(s), piece.getColonne(s)+direction))
+					return;
 			}
+			
+			memoriserDeparts(piece);
+			effacer(piece);
+			piece.decaler(direction);
+			placer(piece);
+			noterDeplacementsPiece(piece);
 		}
 	}
 	
@@ -185,27 +910,30 @@ public class Plateau implements Cloneable
 	 */
 	public int translationVerticale(Piece piece)
 	{
+		int k;
+		
+		// Les puyos sont traits de bas en haut pour qu'un puyo pos sur un autre puyo de la pice s'arrte avec lui
 		for (int i=piece.getMaxI(); i>=piece.getMinI(); i--)
 		{
 			for (int j=piece.getMinJ(); j<=piece.getMaxJ(); j++)
 			{
-				if (tabPlateau[i][j] != null)
+				k = indice(i, j);
+				
+				if ((cases[k] & CHUTE) != 0) // Si la case contient un puyo de la pice
 				{
-					if (i+1 < HAUTEUR && tabPlateau[i+1][j] == null)
+					if (i < getLigneArrivee(j)) // Si le puyo n'a pas atteint le haut de sa colonne
 					{
-						tabPlateau[i+1][j] = tabPlateau[i][j];
-						tabPlateau[i][j] = null;
-						piece.get(tabPlateau[i+1][j]).x++;
+						ecrire(k+largeurInterne, cases[k]);
+						ecrire(k, VIDE);
+						noterDeplacement(k, k+largeurInterne);
+						piece.setPosition(piece.chercher(i, j), i+1, j);
 					}
 					else // le puyo ne peut plus descendre, on le supprime de la forme
 					{
-						if(i < 3)
+						if(i < LIGNES_CACHEES)
 							return PERDU;
 							
-						piece.remove(tabPlateau[i][j]);
-						derniersPuyos.add(new Point(i, j));
-						piece.setCassee();
-						creerLiens(piece, i, j);
+						poserPuyo(piece, k);
 					}
 				}
 			}
@@ -216,82 +944,98 @@ public class Plateau implements Cloneable
 	}
 	
 	/**
-	 * Permet d'effectuer dans le plateau de jeu une rotation de la pice
-	 * fournie de 90 dans le sens prcis. Si la rotation n'est pas possible,
-	 * elle n'est pas effectue et la pice n'est pas modifie. 
-	 * @param sens le sens de la rotation (HORAIRE ou ANTIHORAIRE).
-	 * @param piece la piece sur laquelle on veut effectuer la rotation.
+	 * Permet de faire tomber directement la pice fournie jusqu'en bas
+	 * du plateau de jeu. La ligne d'arrive de chaque puyo de la pice
+	 * est dtermine en une seule passe  partir de la hauteur de sa
+	 * colonne, y compris lorsque la pice se casse.
+	 * Retourne PERDU si un Puyo est bloqu hors de la zone de jeu ou
+	 * PIECE_VIDE sinon, tous les puyos de la pice tant alors bloqus.
+	 * @param piece la pice a dplac.
+	 * @return un entier indiquant si le jeu est perdu.
 	 */
-	public void rotation(int sens, Piece piece)
+	public int chuteRapide(Piece piece)
 	{
-		Point point, pointPivot = piece.getPointPivot();
-		Piece anciennePiece = (Piece) piece.clone();
-		boolean possible = true;
-		int i, j;
+		int k, arrivee;
 		
-		for (Map.Entry<Puyo, Point> paire : piece.entrySet())
+		// Les puyos sont traits de bas en haut pour qu'un puyo pos sur un autre puyo de la pice s'arrte sur lui
+		for (int i=piece.getMaxI(); i>=piece.getMinI(); i--)
 		{
-			point = paire.getValue();
-			
-			if (!pointPivot.equals(point))
+			for (int j=piece.getMinJ(); j<=piece.getMaxJ(); j++)
 			{
-				i = sens * (point.y - pointPivot.y) + pointPivot.x;
-				j = -sens * (point.x - pointPivot.x) + pointPivot.y;
+				k = indice(i, j);
 				
-				if ((i > 3 && i < HAUTEUR && j >= 0 && j < LARGEUR) && (tabPlateau[i][j] == null || piece.containsKey(tabPlateau[i][j])))
-				{
-					piece.get(paire.getKey()).setLocation(i, j);
-				}
-				else
+				if ((cases[k] & CHUTE) != 0) // Si la case contient un puyo de la pice
 				{
-					possible = false;
+					arrivee = getLigneArrivee(j);
 					
-					for (Puyo puyo : piece.keySet())
+					if (arrivee != i) // On dplace le puyo directement sur sa ligne d'arrive
 					{
-						piece.put(puyo, anciennePiece.get(puyo));
+						ecrire(indice(arrivee, j), cases[k]);
+						ecrire(k, VIDE);
+						noterDeplacement(k, indice(arrivee, j));
+						piece.setPosition(piece.chercher(i, j), arrivee, j);
 					}
 					
-					break;
+					if (arrivee < LIGNES_CACHEES)
+						return PERDU;
+					
+					poserPuyo(piece, indice(arrivee, j));
 				}
 			}
 		}
 		
-		if (possible)
-		{
-			rafraichir(anciennePiece, piece);
-		}
+		return PIECE_VIDE;
 	}
 	
 	/**
-	 * Permet de crer les liens pour le puyo situ  la case (i,j) du
-	 * plateau de jeu en sachant que la pice courante est piece afin
-	 * d'viter de crer des liens avec des puyos qui n'ont pas termins
-	 * leur chute.
-	 * @param piece la pice courante
-	 * @param i la coordonne dsignant la ligne considre. 
-	 * @param j la coordonne dsignant la colonne considre.
+	 * Permet de poser le puyo de la pice fournie situ  la case d'indice k
+	 * du tableau interne : il est supprim de la pice, qui est alors casse,
+	 * et devient un puyo pos du plateau.
+	 * @param piece la pice contenant le puyo.
+	 * @param k l'indice de la case du puyo dans le tableau interne.
 	 */
-	private void creerLiens(Piece piece, int i, int j)
+	private void poserPuyo(Piece piece, int k)
 	{
-		if (i > 2) // Pas de liens pour les puyos hors de la zone visible du plateau.
+		int i = ligne(k), j = colonne(k);
+		
+		piece.retirer(piece.chercher(i, j));
+		ecrire(k, cases[k] & ~CHUTE);
+		noter(Modifications.POSEE, k, cases[k]);
+		hauteurs[j]++;
+		marquer(k);
+		piece.setCassee();
+		insererDansBloc(k);
+	}
+	
+	/**
+	 * Permet d'effectuer dans le plateau de jeu une rotation de la pice
+	 * fournie de 90 dans le sens prcis. Si la rotation n'est pas possible,
+	 * elle n'est pas effectue et la pice n'est pas modifie. 
+	 * Les nouvelles positions sont lues dans la table des rotations de la
+	 * pice et toutes vrifies avant d'tre appliques, la pice n'a donc
+	 * jamais besoin d'tre copie.
+	 * @param sens le sens de la rotation (HORAIRE ou ANTIHORAIRE).
+	 * @param piece la piece sur laquelle on veut effectuer la rotation.
+	 */
+	public void rotation(int sens, Piece piece)
+	{
+		int pivot = piece.getEmplacementPivot();
+		
+		if (pivot < 0) // Le pivot est dj pos, la pice ne peut plus tourner
+			return;
+		
+		for (int s=0; s<piece.getNbPuyos(); s++)
 		{
-			if (i-1 > 3)
-			{
-				tabPlateau[i][j].setLien(Puyo.HAUT, tabPlateau[i][j].equals(tabPlateau[i-1][j]));
-			}
-			if (i+1 < HAUTEUR && tabPlateau[i+1][j] != null)
-			{
-				tabPlateau[i+1][j].setLien(Puyo.HAUT, tabPlateau[i][j].equals(tabPlateau[i+1][j]));
-			}
-			if (j+1 < LARGEUR)
-			{
-				tabPlateau[i][j].setLien(Puyo.DROITE, tabPlateau[i][j].equals(tabPlateau[i][j+1]) && (piece == null || !piece.containsKey(tabPlateau[i][j+1])));
-			}
-			if (j-1 >= 0 && tabPlateau[i][j-1] != null)
-			{
-				tabPlateau[i][j-1].setLien(Puyo.DROITE, tabPlateau[i][j].equals(tabPlateau[i][j-1]) && (piece == null || !piece.containsKey(tabPlateau[i][j-1])));
-			}
+			if (s != pivot && !(piece.getLigneApresRotation(s, sens, pivot) > LIGNES_CACHEES
+					&& estAccessible(piece.getLigneApresRotation(s, sens, pivot), piece.getColonneApresRotation(s, sens, pivot))))
+				return;
 		}
+		
+		memoriserDeparts(piece);
+		effacer(piece);
+		piece.tourner(sens, pivot);
+		placer(piece);
+		noterDeplacementsPiece(piece);
 	}
 	
 	/**
@@ -304,96 +1048,325 @@ public class Plateau implements Cloneable
 	 */
 	public int detruireBlocs()
 	{
-		int score = 0;
+		int score = 0, blocs = 0, k, representant, n;
+		long mot;
+		
+		nouvellePasse();
 		
-		for(Point point : derniersPuyos) // Pour tous les puyos dernirement placs ou dplacs dans le tableau
+		// Pour toutes les cases dernirement modifies, les marques tant effaces au fur et  mesure
+		for (int r=0; r<motsModifies.length; r++)
 		{
-			if(tabPlateau[point.x][point.y] != null) // S'il n'a pas dj t supprim
+			while (motsModifies[r] != 0)
 			{
-				// On initialise une liste vide pour stocker les coordonnes des puyos d'un ventuel bloc
-				ArrayList<Point> listePointsBloc = new ArrayList<Point>();
-				// On remplit la liste.
-				parcoursBloc(tabPlateau[point.x][point.y].getCouleur(), point.x, point.y, listePointsBloc);
-				
-				if(listePointsBloc.size() >= 4) // Si elle comporte au moins 4 puyos
+				n = (r << 6) | Long.numberOfTrailingZeros(motsModifies[r]);
+				motsModifies[r] &= motsModifies[r] - 1;
+				mot = casesModifiees[n];
+				casesModifiees[n] = 0;
+			
+				while (mot != 0)
 				{
-					score += 100 + (listePointsBloc.size()-4)*10; // On calcule le score	
-					for(Point p : listePointsBloc) // et on supprime les puyos du plateau.
-						tabPlateau[p.x][p.y] = null;
+					k = (n << 6) | Long.numberOfTrailingZeros(mot);
+					mot &= mot - 1;
+				
+					if(cases[k] != VIDE && estDansBloc(k)) // S'il n'a pas dj t supprim
+					{
+						representant = trouverRepresentant(k);
+					
+						if(visites[representant] != passe) // et que son bloc n'a pas dj t examin
+						{
+							visites[representant] = passe;
+						
+							if(tailles[representant] >= 4) // Si le bloc comporte au moins 4 puyos
+							{
+								blocs++;
+								score += 100 + (tailles[representant]-4)*10; // On calcule le score
+								supprimerBloc(representant); // et on supprime les puyos du plateau.
+							}
+						}
+					}
 				}
 			}
 		}
 		
-		derniersPuyos.clear(); // On vide la liste des derniers puyos.
+		nbBlocsDetruits = blocs;
 		
 		return score;
 	}
 	
 	/**
-	 * Mthode permettant de parcourir rcursivement le plateau  partir d'un point
-	 * pour ajouter  la liste fournie les coordonnes des puyos voisins directs
-	 * possdant la mme couleur que celle fournie. A la fin de l'appel, la liste
-	 * contient toutes coordonnes d'un bloc de puyos relis entre eux.
-	 * @param couleur la couleur du bloc recherch.
-	 * @param i la coordonne dsignant la ligne considre. 
-	 * @param j la coordonne dsignant la colonne considre. 
-	 * @param listePointsBloc la liste contenant les points du bloc.
+	 * Retourne le nombre de blocs dtruits lors de la dernire passe de
+	 * destruction des blocs.
+	 * @return le nombre de blocs dtruits.
+	 */
+	public int getNbBlocsDetruits()
+	{
+		return nbBlocsDetruits;
+	}
+		
+	/**
+	 * Permet de marquer la case d'indice k du tableau interne comme devant
+	 * tre vrifie lors de la prochaine destruction de blocs. Une case
+	 * marque plusieurs fois n'est vrifie qu'une seule fois.
+	 * @param k l'indice de la case considre dans le tableau interne.
+	 */
+	private void marquer(int k)
+	{
+		casesModifiees[k >>> 6] |= 1L << k;
+		motsModifies[k >>> 12] |= 1L << (k >>> 6);
+	}
+	
+	/**
+	 * Permet de commencer une nouvelle passe de destruction : les blocs
+	 * examins lors des passes prcdentes ne sont plus considrs comme
+	 * examins. Les marques ne sont effaces que lorsque le numro de passe
+	 * revient  zro.
 	 */
-	private void parcoursBloc(Color couleur, int i, int j, ArrayList<Point> listePointsBloc) 
+	private void nouvellePasse()
 	{
-		if(i >= 3 && i < HAUTEUR && j >= 0 && j < LARGEUR // Si on ne sort pas du plateau
-				&& !listePointsBloc.contains(new Point(i, j)) // et que la casse n'a pas dj t visite
-				&& tabPlateau[i][j] != null // et qu'il y a bien un puyo dans cette case
-				&& tabPlateau[i][j].getCouleur().equals(couleur)) // et qu'il a la bonne couleur
+		passe++;
+		
+		if (passe == 0)
+		{
+			Arrays.fill(visites, 0);
+			passe = 1;
+		}
+	}
+	
+	/**
+	 * Retourne vrai si la case d'indice k contient un puyo pos de la zone
+	 * visible appartenant  un bloc.
+	 * @param k l'indice de la case dans le tableau interne.
+	 * @return un booleen indiquant si la case appartient  un bloc.
+	 */
+	private boolean estDansBloc(int k)
+	{
+		return k >= premiereCaseVisible && cases[k] != VIDE && cases[k] != BORD
+				&& (cases[k] & CHUTE) == 0 && parents[k] != HORS_BLOC;
+	}
+	
+	/**
+	 * Retourne l'indice de la case reprsentant le bloc contenant la case
+	 * d'indice k, en raccourcissant au passage le chemin vers le reprsentant.
+	 * @param k l'indice de la case dans le tableau interne.
+	 * @return l'indice du reprsentant du bloc.
+	 */
+	private int trouverRepresentant(int k)
+	{
+		while (parents[k] != k)
 		{
-			listePointsBloc.add(new Point(i, j)); // On ajoute le puyo  la liste
-			// et on relance la recherche recursivement sur ses voisins.
-			parcoursBloc(couleur, i+1, j, listePointsBloc);
-			parcoursBloc(couleur, i-1, j, listePointsBloc);
-			parcoursBloc(couleur, i, j+1, listePointsBloc);
-			parcoursBloc(couleur, i, j-1, listePointsBloc);
+			parents[k] = parents[parents[k]];
+			k = parents[k];
 		}
+		
+		return k;
+	}
+	
+	/**
+	 * Permet d'insrer le puyo pos  la case d'indice k dans les blocs du
+	 * plateau : il forme d'abord un bloc  lui seul puis il est runi aux
+	 * blocs de ses voisins poss de mme couleur.
+	 * @param k l'indice de la case dans le tableau interne.
+	 */
+	private void insererDansBloc(int k)
+	{
+		int voisin, couleur = cases[k] & MASQUE_COULEUR;
+	
+		if (k < premiereCaseVisible) // Pas de bloc hors de la zone visible
+			return;
+		
+		parents[k] = k;
+		tailles[k] = 1;
+		suivants[k] = k;
+		
+		for (int d=0; d<voisins.length; d++)
+		{
+			voisin = k + voisins[d];
+				
+			if ((cases[voisin] & MASQUE_COULEUR) == couleur && estDansBloc(voisin))
+				reunirBlocs(k, voisin);
+		}
+	}
+	
+	/**
+	 * Permet de runir les blocs contenant les cases d'indices k1 et k2.
+	 * Le plus petit bloc est rattach au plus grand et leurs listes de
+	 * puyos sont raccordes.
+	 * @param k1 l'indice d'une case du premier bloc.
+	 * @param k2 l'indice d'une case du second bloc.
+	 */
+	private void reunirBlocs(int k1, int k2)
+	{
+		int r1 = trouverRepresentant(k1), r2 = trouverRepresentant(k2), tmp;
+		
+		if (r1 == r2)
+			return;
+		
+		if (tailles[r1] < tailles[r2])
+		{
+			tmp = r1;
+			r1 = r2;
+			r2 = tmp;
+		}
+		
+		parents[r2] = r1;
+		tailles[r1] += tailles[r2];
+		// On raccorde les deux listes circulaires en changeant les suivants des reprsentants.
+		tmp = suivants[r1];
+		suivants[r1] = suivants[r2];
+		suivants[r2] = tmp;
+	}
+	
+	/**
+	 * Permet de supprimer du plateau tous les puyos du bloc dont le
+	 * reprsentant est fourni, en parcourant la liste des puyos du bloc.
+	 * @param representant l'indice du reprsentant du bloc.
+	 */
+	private void supprimerBloc(int representant)
+	{
+		int k = representant, j;
+		
+		do
+		{
+			j = colonne(k);
+			noter(Modifications.VIDEE, k, cases[k]);
+			ecrire(k, VIDE);
+			hauteurs[j]--;
+			if (trous[j] < ligne(k))
+				trous[j] = ligne(k);
+			k = suivants[k];
+		} while (k != representant);
+	}
+	
+	/**
+	 * Permet de dissoudre le bloc contenant la case d'indice k : tous ses
+	 * puyos sont marqus comme devant tre rinsrs et leurs indices sont
+	 * ajouts au tableau aReinserer  partir de la position fournie.
+	 * Retourne la nouvelle position de fin dans le tableau aReinserer.
+	 * @param k l'indice d'une case du bloc.
+	 * @param fin la position de fin actuelle dans le tableau aReinserer.
+	 * @return la nouvelle position de fin dans le tableau aReinserer.
+	 */
+	private int dissoudreBloc(int k, int fin)
+	{
+		int representant = trouverRepresentant(k), suivant;
+		
+		k = representant;
+		do
+		{
+			suivant = suivants[k];
+			parents[k] = HORS_BLOC;
+			aReinserer[fin++] = k;
+			k = suivant;
+		} while (k != representant);
+		
+		return fin;
 	}
 	
 	/**
 	 * Mthode permettant de reorganiser le plateau aprs la destruction
 	 * de blocs en appliquant la gravit. Les puyos au-dessus d'une case
 	 * vide tombent autant qu'ils le peuvent.
+	 * Seules les colonnes dans lesquelles des puyos ont t dtruits sont
+	 * parcourues,  partir de leur plus basse case vide, et chacune est
+	 * compacte en une seule passe, chaque puyo tant dplac directement
+	 * sur sa ligne d'arrive. Les cases des puyos dplacs sont marques
+	 * pour la prochaine destruction de blocs. Les puyos de la pice en chute
+	 * (sur un plateau reconstruit avec sa pice) restent en place, les puyos
+	 * poss tombant dans les cases vides situes sous eux.
+	 * @return un masque dont le bit j indique que des puyos de la colonne j
+	 * ont t dplacs, nul si aucun puyo n'a boug.
 	 */
-	public void faireChuterPuyos()
+	public long faireChuterPuyos()
 	{
-		int di;
+		int k, arrivee, restants, fin = 0;
+		long colonnesDeplacees = 0;
 		
-		// On parcourt le tableau de jeu  partir de la deuxime ligne en partant du bas
-		for (int i=HAUTEUR-2; i>=3; i--)
+		// Les blocs contenant des puyos qui vont tomber sont dissous, ils seront reconstitus aprs la chute.
+		for (int j=0; j<largeur; j++)
 		{
-			for (int j=0; j<LARGEUR; j++)
+			if (trous[j] != AUCUN_TROU)
 			{
-				if (tabPlateau[i][j] != null) // Si la case est occupe
+				// Tous les puyos poss restant au-dessus de la plus basse case vide vont tomber
+				restants = nbPuyosAuDessusDuTrou(j);
+			
+				for (k=indice(trous[j], j); restants > 0; k-=largeurInterne)
 				{
-					di = 1;
-					
-					// On descend le puyo autant que possible
-					while (i+di < HAUTEUR && tabPlateau[i+di][j] == null)
+					if (cases[k] != VIDE && (cases[k] & CHUTE) == 0)
 					{
-						tabPlateau[i+di][j] = tabPlateau[i+di-1][j];
-						tabPlateau[i+di-1][j] = null;
-						di++;
+						restants--;
+				
+						if (estDansBloc(k))
+							fin = dissoudreBloc(k, fin);
 					}
-					
-					if (di > 1) // Si on a dplac le puyo
+				}
+			}
+		}
+		
+		// On compacte chaque colonne troue en partant de sa plus basse case vide
+		for (int j=0; j<largeur; j++)
+		{
+			if (trous[j] != AUCUN_TROU)
+			{
+				restants = nbPuyosAuDessusDuTrou(j);
+				arrivee = indice(trous[j], j); // La case o le prochain puyo rencontr doit arriver
+				
+				if (restants > 0)
+					colonnesDeplacees |= 1L << j;
+				
+				for (k=arrivee; restants > 0; k-=largeurInterne)
+				{
+					if (cases[k] != VIDE && (cases[k] & CHUTE) == 0) // Si la case contient un puyo pos, on le dplace
 					{
-						// On stocke ses coordonnes dans la liste des puyos rcemment dplacs
-						derniersPuyos.add(new Point(i+di-1, j));
-						// On refait la cration des liens du puyo
-						creerLiens(null, i+di-1, j);
-						// et de son ancien voisin.
-						if (j > 0 && tabPlateau[i][j-1] != null)
-							creerLiens(null, i, j-1);
+						ecrire(arrivee, cases[k]);
+						ecrire(k, VIDE);
+						noterDeplacement(k, arrivee);
+						// On le marque pour le rinsrer dans les blocs
+						parents[arrivee] = HORS_BLOC;
+						aReinserer[fin++] = arrivee;
+						// On marque sa case parmi les cases rcemment modifies
+						marquer(arrivee);
+					
+						do // Les cases de la pice en chute sont sautes
+						{
+							arrivee -= largeurInterne;
+						} while ((cases[arrivee] & CHUTE) != 0);
+						restants--;
 					}
 				}
 					
+				trous[j] = AUCUN_TROU;
 			}
 		}
+		
+		// On reconstitue les blocs des puyos dont le bloc a t dissous.
+		for (int n=0; n<fin; n++)
+		{
+			if (cases[aReinserer[n]] != VIDE && parents[aReinserer[n]] == HORS_BLOC)
+				insererDansBloc(aReinserer[n]);
+		}
+		
+		return colonnesDeplacees;
+	}
+	
+	/**
+	 * Retourne le nombre de puyos poss de la colonne j situs au-dessus de
+	 * sa plus basse case vide (trous[j]), obtenu en retirant de la hauteur
+	 * de la colonne les puyos poss situs sous cette case : sur un plateau
+	 * reconstruit avec sa pice, ces cases peuvent aussi contenir des puyos
+	 * de la pice en chute, qui ne sont pas compts.
+	 * @param j la colonne considre.
+	 * @return le nombre de puyos poss qui vont tomber.
+	 */
+	private int nbPuyosAuDessusDuTrou(int j)
+	{
+		int restants = hauteurs[j];
+		
+		for (int k=indice(hauteur-1, j); k > indice(trous[j], j); k-=largeurInterne)
+		{
+			if (cases[k] != VIDE && (cases[k] & CHUTE) == 0)
+				restants--;
+		}
+		
+		return restants;
 	}
 }
@@ -0,0 +1,379 @@
+package moteur;
+
+/**
+ * Classe reprsentant un plateau de jeu sous la forme d'un masque de bits
+ * par couleur de puyo. Elle est destine  la recherche et  la simulation
+ * (intelligence artificielle, valuation de positions) : la dtection des
+ * blocs, l'application de la gravit et la dtection de la dfaite y sont
+ * effectues uniquement par des oprations sur les bits, sans aucune
+ * allocation. Les rsultats sont identiques  ceux obtenus avec Plateau.
+ * Chaque colonne occupe 16 bits (le bit i correspond  la ligne i, le
+ * seizime bit servant de garde), les quatre premires colonnes sont
+ * stockes dans un premier mot de 64 bits et les suivantes dans un second.
+ * Seuls les puyos poss sont reprsents, il n'y a pas de pice en chute.
+ * Le plateau binaire a toujours les dimensions par dfaut de Plateau.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class PlateauBinaire implements Cloneable
+{
+	/** Constante indiquant qu'une case ne contient aucun puyo */
+	public static final int VIDE = -1;
+	/** Le nombre de lignes caches en haut du plateau */
+	private static final int LIGNES_CACHEES = Plateau.LIGNES_CACHEES;
+	/** Le nombre de bits occups par une colonne dans un mot */
+	private static final int BITS_COLONNE = 16;
+	/** Le nombre de colonnes stockes dans un mot */
+	private static final int COLONNES_PAR_MOT = 4;
+	/** Masque des bits correspondant  une colonne entire */
+	private static final long MASQUE_COLONNE = (1L << Plateau.HAUTEUR) - 1;
+	/** Masques des cases existantes du plateau dans chacun des deux mots */
+	private static final long VALIDES0, VALIDES1;
+	/** Masques des cases de la zone visible du plateau dans chacun des deux mots */
+	private static final long ZONE0, ZONE1;
+	
+	static
+	{
+		long valides0 = 0, valides1 = 0, zone0 = 0, zone1 = 0;
+		
+		for (int j=0; j<Plateau.LARGEUR; j++)
+		{
+			long colonne = MASQUE_COLONNE << ((j % COLONNES_PAR_MOT) * BITS_COLONNE);
+			long colonneVisible = colonne & (colonne << LIGNES_CACHEES);
+			
+			if (j < COLONNES_PAR_MOT)
+			{
+				valides0 |= colonne;
+				zone0 |= colonneVisible;
+			}
+			else
+			{
+				valides1 |= colonne;
+				zone1 |= colonneVisible;
+			}
+		}
+		
+		VALIDES0 = valides0;
+		VALIDES1 = valides1;
+		ZONE0 = zone0;
+		ZONE1 = zone1;
+	}
+	
+	/** Les masques des puyos de chaque couleur pour les quatre premires colonnes */
+	private long[] mots0;
+	/** Les masques des puyos de chaque couleur pour les colonnes suivantes */
+	private long[] mots1;
+	
+	/**
+	 * Cre un nouveau plateau binaire vide.
+	 */
+	public PlateauBinaire()
+	{
+		mots0 = new long[Puyo.NB_COULEURS];
+		mots1 = new long[Puyo.NB_COULEURS];
+	}
+	
+	/**
+	 * Cre un nouveau plateau binaire contenant les mmes puyos que le
+	 * plateau fourni. Tous les puyos prsents dans le plateau, y compris
+	 * ceux d'une ventuelle pice en chute, sont considrs comme poss.
+	 * @param plateau le plateau  convertir.
+	 * @throws IllegalArgumentException si le plateau n'a pas les dimensions par dfaut.
+	 */
+	public PlateauBinaire(Plateau plateau)
+	{
+		this();
+		
+		if (plateau.getLargeur() != Plateau.LARGEUR || plateau.getHauteur() != Plateau.HAUTEUR)
+			throw new IllegalArgumentException("Seuls les plateaux aux dimensions par dfaut peuvent tre convertis");
+		
+		for (int i=0; i<Plateau.HAUTEUR; i++)
+		{
+			for (int j=0; j<Plateau.LARGEUR; j++)
+			{
+				if (!plateau.estLibre(i, j))
+					poser(i, j, plateau.getIndiceCouleurPuyo(i, j));
+			}
+		}
+	}
+	
+	/**
+	 * Retourne une copie du plateau binaire.
+	 * @return une copie du plateau binaire.
+	 */
+	public Object clone()
+	{
+		PlateauBinaire clone = new PlateauBinaire();
+		clone.copier(this);
+		
+		return clone;
+	}
+	
+	/**
+	 * Permet de recopier dans ce plateau l'tat du plateau fourni sans
+	 * effectuer aucune allocation.
+	 * @param plateau le plateau  recopier.
+	 */
+	public void copier(PlateauBinaire plateau)
+	{
+		System.arraycopy(plateau.mots0, 0, mots0, 0, mots0.length);
+		System.arraycopy(plateau.mots1, 0, mots1, 0, mots1.length);
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant le plateau, chaque
+	 * case tant reprsente par l'indice de la couleur de son puyo ou
+	 * par un point si elle est vide.
+	 * @return une chaine de caractre reprsentant le plateau.
+	 */
+	public String toString()
+	{
+		StringBuilder s = new StringBuilder();
+		int couleur;
+		
+		for (int i=0; i<Plateau.HAUTEUR; i++)
+		{
+			for (int j=0; j<Plateau.LARGEUR; j++)
+			{
+				couleur = getCouleur(i, j);
+				s.append(couleur == VIDE ? "." : String.valueOf(couleur));
+				s.append(" ");
+			}
+			s.append("\n");
+		}
+		
+		return s.toString();
+	}
+	
+	/**
+	 * Retourne la position du bit correspondant  la case (i,j) dans son mot.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return la position du bit dans le mot.
+	 */
+	private static int bit(int i, int j)
+	{
+		return (j % COLONNES_PAR_MOT) * BITS_COLONNE + i;
+	}
+	
+	/**
+	 * Retourne le masque des cases occupes du premier mot.
+	 * @return le masque des cases occupes des quatre premires colonnes.
+	 */
+	private long occupation0()
+	{
+		long occupation = 0;
+		
+		for (int c=0; c<Puyo.NB_COULEURS; c++)
+			occupation |= mots0[c];
+		
+		return occupation;
+	}
+	
+	/**
+	 * Retourne le masque des cases occupes du second mot.
+	 * @return le masque des cases occupes des colonnes suivantes.
+	 */
+	private long occupation1()
+	{
+		long occupation = 0;
+		
+		for (int c=0; c<Puyo.NB_COULEURS; c++)
+			occupation |= mots1[c];
+		
+		return occupation;
+	}
+	
+	/**
+	 * Retourne vrai ou faux selon que la case du plateau de coordonnes (i,j)
+	 * soit libre ou non.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return un booleen indiquant si la case est libre ou non.
+	 */
+	public boolean estLibre(int i, int j)
+	{
+		return getCouleur(i, j) == VIDE;
+	}
+	
+	/**
+	 * Retourne l'indice de la couleur du puyo situ  la case (i,j) du
+	 * plateau ou VIDE si la case est libre.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return l'indice de la couleur du puyo ou VIDE.
+	 */
+	public int getCouleur(int i, int j)
+	{
+		long[] mots = (j < COLONNES_PAR_MOT) ? mots0 : mots1;
+		long masque = 1L << bit(i, j);
+		
+		for (int c=0; c<Puyo.NB_COULEURS; c++)
+		{
+			if ((mots[c] & masque) != 0)
+				return c;
+		}
+		
+		return VIDE;
+	}
+	
+	/**
+	 * Permet de placer un puyo de la couleur indique dans la case (i,j)
+	 * du plateau, sans appliquer la gravit. La case doit tre libre.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @param couleur l'indice de la couleur du puyo.
+	 */
+	public void poser(int i, int j, int couleur)
+	{
+		if (j < COLONNES_PAR_MOT)
+			mots0[couleur] |= 1L << bit(i, j);
+		else
+			mots1[couleur] |= 1L << bit(i, j);
+	}
+	
+	/**
+	 * Retourne la ligne sur laquelle s'arrterait un puyo lch dans la
+	 * colonne j, c'est--dire la ligne juste au dessus du puyo le plus haut
+	 * de la colonne. Le rsultat est ngatif si la colonne est pleine.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @return la ligne d'arrive d'un puyo lch dans la colonne.
+	 */
+	public int getLigneArrivee(int j)
+	{
+		long colonne = ((j < COLONNES_PAR_MOT) ? occupation0() : occupation1()) >>> bit(0, j);
+		colonne &= MASQUE_COLONNE;
+		
+		return (colonne == 0 ? Plateau.HAUTEUR : Long.numberOfTrailingZeros(colonne)) - 1;
+	}
+	
+	/**
+	 * Permet de lcher un puyo de la couleur indique dans la colonne j.
+	 * Le puyo est plac sur le puyo le plus haut de la colonne.
+	 * Retourne la ligne sur laquelle le puyo s'est arrt, ou Plateau.PERDU
+	 * si le puyo est bloqu hors de la zone de jeu (comme le fait
+	 * Plateau.translationVerticale).
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @param couleur l'indice de la couleur du puyo.
+	 * @return la ligne d'arrive du puyo ou PERDU si le jeu est perdu.
+	 */
+	public int lacher(int j, int couleur)
+	{
+		int i = getLigneArrivee(j);
+		
+		if (i < 0)
+			return Plateau.PERDU;
+		
+		poser(i, j, couleur);
+		
+		return (i < LIGNES_CACHEES) ? Plateau.PERDU : i;
+	}
+	
+	/**
+	 * Retourne vrai si un puyo est prsent hors de la zone de jeu, c'est
+	 *  dire si la partie est perdue.
+	 * @return un booleen indiquant si la partie est perdue.
+	 */
+	public boolean estPerdu()
+	{
+		return ((occupation0() & ~ZONE0) | (occupation1() & ~ZONE1)) != 0;
+	}
+	
+	/**
+	 * Permet de dtruire les blocs comportant au moins 4 puyos actuellement
+	 * prsents dans la zone visible du plateau.
+	 * Retourne le score rapport par les destructions effectues, calcul
+	 * de la mme faon que Plateau.detruireBlocs : 100 points par bloc de
+	 * 4 puyos dtruit avec un bonus de 10 par puyo supplmentaire.
+	 * @return le score rapport par les destructions effectues ou 0 si
+	 * aucune destruction de bloc n'a t effectue.
+	 */
+	public int detruireBlocs()
+	{
+		int score = 0, taille;
+		long restants0, restants1, bloc0, bloc1, precedent0, precedent1, detruits0, detruits1;
+		
+		for (int c=0; c<Puyo.NB_COULEURS; c++)
+		{
+			restants0 = mots0[c] & ZONE0;
+			restants1 = mots1[c] & ZONE1;
+			detruits0 = detruits1 = 0;
+			
+			while ((restants0 | restants1) != 0) // Tant qu'il reste des puyos de cette couleur  examiner
+			{
+				// On part du premier puyo restant
+				if (restants0 != 0)
+				{
+					bloc0 = restants0 & -restants0;
+					bloc1 = 0;
+				}
+				else
+				{
+					bloc0 = 0;
+					bloc1 = restants1 & -restants1;
+				}
+				
+				// et on tend le bloc  ses voisins de mme couleur jusqu' stabilisation.
+				do
+				{
+					precedent0 = bloc0;
+					precedent1 = bloc1;
+					bloc0 = (bloc0 | (bloc0 << 1) | (bloc0 >>> 1) | (bloc0 << BITS_COLONNE) | (bloc0 >>> BITS_COLONNE)
+							| (precedent1 << (64 - BITS_COLONNE))) & restants0;
+					bloc1 = (bloc1 | (bloc1 << 1) | (bloc1 >>> 1) | (bloc1 << BITS_COLONNE) | (bloc1 >>> BITS_COLONNE)
+							| (precedent0 >>> (64 - BITS_COLONNE))) & restants1;
+				} while (bloc0 != precedent0 || bloc1 != precedent1);
+				
+				restants0 &= ~bloc0;
+				restants1 &= ~bloc1;
+				taille = Long.bitCount(bloc0) + Long.bitCount(bloc1);
+				
+				if (taille >= 4) // Si le bloc comporte au moins 4 puyos
+				{
+					score += 100 + (taille-4)*10; // On calcule le score
+					detruits0 |= bloc0; // et on marque le bloc pour la destruction.
+					detruits1 |= bloc1;
+				}
+			}
+			
+			mots0[c] &= ~detruits0;
+			mots1[c] &= ~detruits1;
+		}
+		
+		return score;
+	}
+	
+	/**
+	 * Mthode permettant de reorganiser le plateau aprs la destruction
+	 * de blocs en appliquant la gravit. Les puyos de la zone visible
+	 * au-dessus d'une case vide tombent autant qu'ils le peuvent.
+	 * A chaque itration, tous les puyos situs juste au-dessus d'une
+	 * case vide descendent simultanment d'une ligne.
+	 */
+	public void faireChuterPuyos()
+	{
+		long occupation0 = occupation0(), occupation1 = occupation1();
+		long chute0, chute1, deplaces;
+		
+		while (true)
+		{
+			// Les puyos pouvant descendre sont ceux dont la case du dessous est vide
+			chute0 = occupation0 & ZONE0 & ((~occupation0 & VALIDES0) >>> 1);
+			chute1 = occupation1 & ZONE1 & ((~occupation1 & VALIDES1) >>> 1);
+			
+			if ((chute0 | chute1) == 0)
+				break;
+			
+			for (int c=0; c<Puyo.NB_COULEURS; c++)
+			{
+				deplaces = mots0[c] & chute0;
+				mots0[c] ^= deplaces ^ (deplaces << 1);
+				deplaces = mots1[c] & chute1;
+				mots1[c] ^= deplaces ^ (deplaces << 1);
+			}
+			
+			occupation0 ^= chute0 ^ (chute0 << 1);
+			occupation1 ^= chute1 ^ (chute1 << 1);
+		}
+	}
+}
@@ -1,22 +1,24 @@
 package moteur;
 
 import java.awt.Color;
-import java.util.Random;
 
 /**
  * Classe reprsentant un puyo. Le puyo possde juste une couleur et sait
- * s'il possde un lien avec le puyo juste au dessus de lui ou le puyo
- * juste  sa droite. L'galit entre deux puyos peut tre teste : s'ils
+ * s'il possde un lien avec chacun de ses quatre voisins (en haut,  droite,
+ * en bas et  gauche). L'galit entre deux puyos peut tre teste : s'ils
  * ont la mme couleur, ils sont considrs comme gaux.
  * A sa cration le puyo peut prend une couleur alatoire parmi un choix de quatre,
- * si sa couleur n'est pas indiqu.
+ * si sa couleur n'est pas indiqu, tire  l'aide du gnrateur de la partie.
+ * La couleur est stocke sous la forme de son indice parmi les couleurs possibles
+ * et les liens sous la forme de bits, la comparaison de deux puyos se rduit donc
+ *  une comparaison d'entiers.
+ * Les puyos retourns par le plateau sont des vues partages en lecture
+ * seule : leurs liens ne peuvent pas tre modifis.
  * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
  *
  */
 public class Puyo
 {
-	/** Gnrateur de nombres alatoires partag par tous les puyos */
-	private static Random rand = new Random();
 	/** Couleurs possibles pour le puyo, utilises pour le choix alatoire d'une couleur */
 	private static final Color[] couleurs = 
 	{
@@ -25,34 +27,73 @@ public class Puyo
 		Color.GREEN,
 		Color.BLACK
 	};
-	/** La couleur du puyo */
-	private Color couleur;
+	/** Le nombre de couleurs diffrentes que peut prendre un puyo */
+	public static final int NB_COULEURS = 4;
+	/** Les composantes rouge, verte et bleue de chaque couleur possible, utilises pour l'affichage */
+	private static final float[][] composantes = new float[couleurs.length][];
+	/** L'indice de la couleur du puyo parmi les couleurs possibles */
+	private final byte couleur;
 	/** Constante dfinissant l'indice du lien vers la droite */
 	public static final int DROITE = 0;
 	/** Constante dfinissant l'indice du lien vers le haut */
 	public static final int HAUT = 1;
-	/** Tableaux permettant de stocker la prsence des liens */
-	private boolean[] liens;
+	/** Constante dfinissant l'indice du lien vers le bas */
+	public static final int BAS = 2;
+	/** Constante dfinissant l'indice du lien vers la gauche */
+	public static final int GAUCHE = 3;
+	/** Le nombre de combinaisons de liens diffrentes */
+	private static final int NB_COMBINAISONS_LIENS = 1 << 4;
+	/** Les liens du puyo, le bit d'indice DROITE (resp. HAUT, BAS, GAUCHE) indiquant la prsence du lien dans cette direction */
+	private byte liens;
+	/** Indique si le puyo est une vue partage, dont les liens ne peuvent pas tre modifis */
+	private final boolean vue;
+	/** Les puyos servant de vues en lecture seule sur les cases du plateau pour chaque couleur et chaque combinaison de liens */
+	private static final Puyo[] vues = new Puyo[couleurs.length * NB_COMBINAISONS_LIENS];
+	
+	static
+	{
+		for (int c=0; c<couleurs.length; c++)
+		{
+			composantes[c] = couleurs[c].getRGBColorComponents(null);
+			
+			for (int l=0; l<NB_COMBINAISONS_LIENS; l++)
+				vues[c*NB_COMBINAISONS_LIENS + l] = new Puyo(c, l);
+		}
+	}
+	
+	/**
+	 * Cre un nouveau puyo avec une couleur choisie parmi les quatre
+	 * possibles  l'aide du gnrateur fourni et aucun lien avec ces voisins.
+	 * @param generateur le gnrateur utilis pour choisir la couleur.
+	 */
+	public Puyo(Generateur generateur)
+	{
+		this(generateur.entier(couleurs.length));
+	}
 	
 	/**
-	 * Cre un nouveau puyo avec une couleur alatoire choisie parmi les
-	 * quatre possibles et aucun lien avec ces voisins.
-	 */ 
-	public Puyo()
+	 * Cre un nouveau possdant la couleur d'indice couleur et aucun lien avec ces voisins.
+	 * @param couleur l'indice de la couleur du puyo
+	 */
+	Puyo(int couleur)
 	{
-		this(couleurs[rand.nextInt(couleurs.length)]);
+		this.couleur = (byte) couleur;
+		
+		liens = 0;
+		vue = false;
 	}
 	
 	/**
-	 * Cre un nouveau possdant la couleur couleur et aucun lien avec ces voisins.
-	 * @param couleur la couleur du puyo
+	 * Cre la vue partage possdant la couleur d'indice couleur et les liens indiqus.
+	 * @param couleur l'indice de la couleur du puyo.
+	 * @param liens les liens du puyo.
 	 */
-	private Puyo(Color couleur)
+	private Puyo(int couleur, int liens)
 	{
-		this.couleur = couleur;
+		this.couleur = (byte) couleur;
+		this.liens = (byte) liens;
 		
-		liens = new boolean[2];
-		liens[DROITE] = liens[HAUT] = false;
+		vue = true;
 	}
 	
 	/**
@@ -60,10 +101,74 @@ public class Puyo
 	 * @return la couleur du puyo.
 	 */
 	public Color getCouleur()
+	{
+		return couleurs[couleur];
+	}
+	
+	/**
+	 * Retourne l'indice de la couleur du puyo considr parmi les couleurs
+	 * possibles (entre 0 et NB_COULEURS-1).
+	 * @return l'indice de la couleur du puyo.
+	 */
+	public int getIndiceCouleur()
 	{
 		return couleur;
 	}
 	
+	/**
+	 * Retourne l'indice de la couleur fournie parmi les couleurs possibles
+	 * des puyos (entre 0 et NB_COULEURS-1) ou -1 si la couleur n'est pas
+	 * une couleur de puyo.
+	 * @param couleur la couleur considre.
+	 * @return l'indice de la couleur ou -1.
+	 */
+	public static int getIndiceCouleur(Color couleur)
+	{
+		for (int c=0; c<couleurs.length; c++)
+		{
+			if (couleurs[c].equals(couleur))
+				return c;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Retourne la couleur correspondant  l'indice fourni.
+	 * @param indice l'indice de la couleur (entre 0 et NB_COULEURS-1).
+	 * @return la couleur correspondante.
+	 */
+	public static Color getCouleur(int indice)
+	{
+		return couleurs[indice];
+	}
+	
+	/**
+	 * Retourne les composantes rouge, verte et bleue (entre 0 et 1) de la
+	 * couleur correspondant  l'indice fourni. Le tableau retourn est
+	 * partag et ne doit pas tre modifi.
+	 * @param indice l'indice de la couleur (entre 0 et NB_COULEURS-1).
+	 * @return les composantes de la couleur.
+	 */
+	public static float[] getComposantes(int indice)
+	{
+		return composantes[indice];
+	}
+	
+	/**
+	 * Retourne le puyo partag reprsentant un puyo de la couleur et avec
+	 * les liens indiqus. Ces puyos servent de vues sur les cases du plateau
+	 * et ne peuvent pas tre modifis.
+	 * @param couleur l'indice de la couleur du puyo.
+	 * @param liens les liens du puyo, le bit d'indice DROITE (resp. HAUT, BAS,
+	 * GAUCHE) indiquant la prsence du lien dans cette direction.
+	 * @return le puyo correspondant.
+	 */
+	static Puyo getVue(int couleur, int liens)
+	{
+		return vues[couleur*NB_COMBINAISONS_LIENS + liens];
+	}
+	
 	/**
 	 * Retourne vrai ou faux selon que le lien dsign par l'indice lien
 	 * existe ou non.
@@ -72,7 +177,7 @@ public class Puyo
 	 */
 	public boolean getLien(int lien)
 	{
-		return liens[lien];
+		return (liens & (1 << lien)) != 0;
 	}
 	
 	/**
@@ -80,10 +185,17 @@ public class Puyo
 	 * ou non.
 	 * @param lien l'indice correspondant au lien.
 	 * @param existe un booleen indiquant si le lien existe ou non.
+	 * @throws UnsupportedOperationException si le puyo est une vue partage retourne par le plateau.
 	 */
 	public void setLien(int lien, boolean existe)
 	{
-		liens[lien] = existe;
+		if (vue)
+			throw new UnsupportedOperationException("Les liens d'un puyo du plateau ne peuvent pas tre modifis");
+		
+		if (existe)
+			liens |= 1 << lien;
+		else
+			liens &= ~(1 << lien);
 	}
 	
 	/**
@@ -100,9 +212,19 @@ public class Puyo
 		if (obj instanceof Puyo)
 		{
 			Puyo puyo = (Puyo) obj;
-			egaux = couleur.equals(puyo.getCouleur());
+			egaux = couleur == puyo.couleur;
 		}
 		
 		return egaux;
 	}
+	
+	/**
+	 * Retourne un code de hachage cohrent avec equals, c'est--dire
+	 * ne dpendant que de la couleur du puyo.
+	 * @return le code de hachage du puyo.
+	 */
+	public int hashCode()
+	{
+		return couleur;
+	}
 }
@@ -0,0 +1,165 @@
+package moteur;
+
+/**
+ * Classe reprsentant le rsultat d'une tape du moteur de jeu : elle
+ * indique si la pice courante s'est pose, combien de blocs ont t
+ * dtruits, le nombre d'enchanements atteint, le score gagn et si la
+ * partie est perdue.
+ * Un mme rsultat est rutilis par le moteur d'une tape  l'autre, son
+ * contenu n'est donc valable que jusqu' l'tape suivante.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class ResultatEtape
+{
+	/** Indique si la pice courante s'est entirement pose pendant l'tape */
+	private boolean posee;
+	/** Le nombre de blocs dtruits pendant l'tape */
+	private int nbBlocsDetruits;
+	/** Le nombre d'enchanements effectus depuis la pose de la pice */
+	private int enchainements;
+	/** Le score gagn pendant l'tape */
+	private int score;
+	/** Indique si le niveau de difficult a t modifi pendant l'tape */
+	private boolean difficulteModifiee;
+	/** Indique si la pice suivante a t charge pendant l'tape */
+	private boolean pieceChargee;
+	/** Indique si la partie est perdue */
+	private boolean perdu;
+	
+	/**
+	 * Cre un nouveau rsultat vide.
+	 */
+	public ResultatEtape()
+	{
+		reinitialiser();
+	}
+	
+	/**
+	 * Permet de remettre le rsultat  zro avant une nouvelle tape.
+	 */
+	void reinitialiser()
+	{
+		posee = false;
+		nbBlocsDetruits = 0;
+		enchainements = 0;
+		score = 0;
+		difficulteModifiee = false;
+		pieceChargee = false;
+		perdu = false;
+	}
+	
+	/**
+	 * Retourne une chaine de caractre reprsentant le rsultat.
+	 * @return une chaine de caractre reprsentant le rsultat.
+	 */
+	public String toString()
+	{
+		return "Etape : pose=" + posee + ", blocs=" + nbBlocsDetruits + ", enchanements=" + enchainements
+			+ ", score=" + score + ", difficult modifie=" + difficulteModifiee
+			+ ", pice charge=" + pieceChargee + ", perdu=" + perdu;
+	}
+	
+	/**
+	 * Retourne vrai si la pice courante s'est entirement pose pendant l'tape.
+	 * @return un boolen indiquant si la pice s'est pose.
+	 */
+	public boolean estPosee()
+	{
+		return posee;
+	}
+	
+	/**
+	 * Permet d'indiquer que la pice courante s'est entirement pose.
+	 */
+	void setPosee()
+	{
+		posee = true;
+	}
+	
+	/**
+	 * Retourne le nombre de blocs dtruits pendant l'tape.
+	 * @return le nombre de blocs dtruits.
+	 */
+	public int getNbBlocsDetruits()
+	{
+		return nbBlocsDetruits;
+	}
+	
+	/**
+	 * Retourne le nombre d'enchanements effectus depuis la pose de la
+	 * pice, l'tape comprise.
+	 * @return le nombre d'enchanements.
+	 */
+	public int getEnchainements()
+	{
+		return enchainements;
+	}
+	
+	/**
+	 * Retourne le score gagn pendant l'tape.
+	 * @return le score gagn.
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+	
+	/**
+	 * Permet d'indiquer les destructions effectues pendant l'tape.
+	 * @param nbBlocsDetruits le nombre de blocs dtruits.
+	 * @param enchainements le nombre d'enchanements effectus.
+	 * @param score le score gagn.
+	 * @param difficulteModifiee indique si le niveau de difficult a t modifi.
+	 */
+	void setDestructions(int nbBlocsDetruits, int enchainements, int score, boolean difficulteModifiee)
+	{
+		this.nbBlocsDetruits = nbBlocsDetruits;
+		this.enchainements = enchainements;
+		this.score = score;
+		this.difficulteModifiee = difficulteModifiee;
+	}
+	
+	/**
+	 * Retourne vrai si le niveau de difficult a t modifi pendant l'tape.
+	 * @return un boolen indiquant si la difficult a t modifie.
+	 */
+	public boolean estDifficulteModifiee()
+	{
+		return difficulteModifiee;
+	}
+	
+	/**
+	 * Retourne vrai si la pice suivante a t charge pendant l'tape.
+	 * @return un boolen indiquant si la pice suivante a t charge.
+	 */
+	public boolean estPieceChargee()
+	{
+		return pieceChargee;
+	}
+	
+	/**
+	 * Permet d'indiquer que la pice suivante a t charge.
+	 */
+	void setPieceChargee()
+	{
+		pieceChargee = true;
+	}
+	
+	/**
+	 * Retourne vrai si la partie est perdue.
+	 * @return un boolen indiquant si la partie est perdue.
+	 */
+	public boolean estPerdu()
+	{
+		return perdu;
+	}
+	
+	/**
+	 * Permet d'indiquer que la partie est perdue.
+	 */
+	void setPerdu()
+	{
+		perdu = true;
+	}
+}
@@ -0,0 +1,164 @@
+package moteur;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Classe implmentant la chute cadence des pices d'une partie :  chaque
+ * battement de son cadenceur, la tche fait avancer la partie d'une seule
+ * tape du moteur de jeu et transmet le rsultat  l'affichage.
+ * Pendant la chute de la pice, les battements ont lieu  la priode
+ * correspondant  la difficult de la partie. Une fois la pice pose,
+ * chaque tape de l'enchanement (destruction de blocs ou gravit) est un
+ * battement ayant lieu DELAI_ENCHAINEMENT millisecondes aprs le prcdent :
+ * aucun thread du planificateur n'est endormi entre deux tapes et aucun
+ * verrou n'est gard entre deux battements. Mettre la partie en pause
+ * revient  arrter les battements, l'enchanement reprenant l o il
+ * s'tait arrt lorsqu'ils sont redmarrs.
+ * Chaque tape et la lecture de son rsultat sont effectues en dtenant
+ * le verrou du moteur de jeu (voir MoteurJeu).
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class TacheChute implements Runnable
+{
+	/** Le dlai en millisecondes sparant deux tapes d'un enchanement */
+	public static final long DELAI_ENCHAINEMENT = 200;
+	/** Le moteur de jeu faisant progresser la partie */
+	private final MoteurJeu moteur;
+	/** L'affichage recevant le rsultat des tapes */
+	private final Affichage affichage;
+	/** Le cadenceur excutant la tche */
+	private final Cadenceur cadenceur;
+	/** La partie dont les pices chutent */
+	private volatile Partie partie;
+	
+	/**
+	 * Interface que doit implmenter l'affichage d'une partie pour recevoir
+	 * le rsultat des tapes effectues par la tche. Ses mthodes sont
+	 * appeles par un thread du planificateur.
+	 */
+	public interface Affichage
+	{
+		/**
+		 * Permet de charger le nouvel tat du plateau de la partie.
+		 * @param plateau l'instantan du plateau.
+		 */
+		void chargerPlateau(Instantane plateau);
+		
+		/**
+		 * Permet de charger les pices suivantes aprs l'apparition d'une pice.
+		 * @param piecesSuivantes la file des pices suivantes.
+		 */
+		void chargerPiecesSuivantes(FilePieces piecesSuivantes);
+		
+		/**
+		 * Permet d'indiquer que la partie est perdue, la tche tant dj arrte.
+		 * @param partie la partie perdue.
+		 */
+		void terminerPartie(Partie partie);
+	}
+	
+	/**
+	 * Cre une nouvelle tche de chute arrte, dont les battements sont
+	 * excuts par le planificateur fourni, qui peut tre partag.
+	 * @param planificateur le planificateur excutant les battements.
+	 * @param moteur le moteur de jeu faisant progresser la partie.
+	 * @param affichage l'affichage recevant le rsultat des tapes.
+	 */
+	public TacheChute(ScheduledExecutorService planificateur, MoteurJeu moteur, Affichage affichage)
+	{
+		this.moteur = moteur;
+		this.affichage = affichage;
+		cadenceur = new Cadenceur(planificateur, this, getPeriode(0));
+		partie = null;
+	}
+	
+	/**
+	 * Retourne la priode de chute des pices correspondant  la difficult
+	 * indique.
+	 * @param difficulte la difficult considre (entre 0 et 9).
+	 * @return la priode en millisecondes.
+	 */
+	public static long getPeriode(int difficulte)
+	{
+		return 500 - difficulte*50;
+	}
+	
+	/**
+	 * Permet de dmarrer (ou de redmarrer) la chute des pices de la partie
+	 * fournie, le premier battement ayant lieu aprs le dlai indiqu.
+	 * @param partie la partie considre.
+	 * @param delai le dlai avant le premier battement en millisecondes.
+	 */
+	public void demarrer(Partie partie, long delai)
+	{
+		this.partie = partie;
+		cadenceur.setPeriode(getPeriode(partie.getDifficulte()));
+		cadenceur.demarrer(delai);
+	}
+	
+	/**
+	 * Permet d'arrter la chute des pices. Un battement en cours se termine
+	 * normalement mais n'est suivi d'aucun autre.
+	 */
+	public void arreter()
+	{
+		cadenceur.arreter();
+	}
+	
+	/**
+	 * Permet d'appliquer la difficult actuelle de la partie  la priode
+	 * de chute,  partir du battement suivant le prochain.
+	 */
+	public void majPeriode()
+	{
+		Partie partie = this.partie;
+		
+		if (partie != null)
+			cadenceur.setPeriode(getPeriode(partie.getDifficulte()));
+	}
+	
+	/**
+	 * Mthode lance par le cadenceur  chaque battement pour faire avancer
+	 * la partie d'une tape : descente de la pice d'une case, dtection de
+	 * la dfaite, destruction des blocs ou application de la gravit. Ds
+	 * que la pice est casse, le moteur termine la chute des puyos restants
+	 * en une seule tape.
+	 */
+	public void run()
+	{
+		Partie partie = this.partie;
+		ResultatEtape resultat;
+		boolean chute;
+		
+		if (partie == null || !partie.estEnCours() || partie.estEnPause()) // La partie a pu tre arrte ou mise en pause depuis la planification.
+			return;
+		
+		synchronized (moteur)
+		{
+			chute = partie.getPhase() == MoteurJeu.CHUTE;
+			resultat = moteur.etape(partie, MoteurJeu.AUCUNE);
+			
+			if (resultat.estPerdu()) // Si on a perdu
+			{
+				cadenceur.arreter();
+				affichage.terminerPartie(partie);
+				return;
+			}
+			
+			if (resultat.estDifficulteModifiee()) // Si la difficult a t modifie par l'ajout du score, on l'applique.
+				majPeriode();
+			
+			// On met  jour l'affichage, les infos de jeu tant mises  jour par les observateurs des vnements.
+			if (resultat.estPieceChargee()) // Si aucun bloc n'a t dtruit, la pice suivante a t charge
+				affichage.chargerPiecesSuivantes(partie.getPiecesSuivantes()); // et chute au battement suivant.
+			else
+			{
+				affichage.chargerPlateau(partie.getPlateau().getInstantane());
+				
+				if (!chute || resultat.estPosee()) // La pice est pose, l'enchanement se poursuit au rythme des tapes.
+					cadenceur.setDelaiSuivant(DELAI_ENCHAINEMENT);
+			}
+		}
+	}
+}
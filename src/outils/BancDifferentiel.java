@@ -0,0 +1,517 @@
+package outils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import moteur.CodecPlateau;
+import moteur.Generateur;
+import moteur.MoteurJeu;
+import moteur.Partie;
+import moteur.Piece;
+import moteur.Plateau;
+import moteur.PlateauBinaire;
+import moteur.ResultatEtape;
+
+/**
+ * Programme de test diffrentiel comparant le moteur de jeu de rfrence
+ * (Partie, Plateau et MoteurJeu)  un moteur candidat plus rapide (par
+ * dfaut PlateauBinaire).
+ * Chaque cas de test est dfini par une graine, qui fixe la suite des
+ * pices de la partie, et par une suite d'entres tires alatoirement.
+ * La partie de rfrence est joue tape par tape avec ces entres ;
+ * chaque pice pose est lche dans le moteur candidat, qui effectue
+ * ensuite les mmes destructions de blocs et applications de la gravit.
+ * Aprs chaque tape, les puyos poss, le score, le nombre d'enchanements
+ * et la dfaite sont compars, le score du candidat tant calcul par une
+ * partie fantme  partir des scores bruts qu'il retourne.
+ * Les cas sont rpartis entre autant de threads que de processeurs. Lorsqu'un
+ * cas choue, sa suite d'entres est rduite (suppression de tranches puis
+ * remplacement des entres par AUCUNE) tant que l'chec persiste, et la
+ * reproduction minimale obtenue est affiche.
+ * Arguments facultatifs : le nombre de cas, la premire graine et le nombre
+ * d'entres par cas.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class BancDifferentiel
+{
+	/** Le nombre de cas de test par dfaut */
+	private static final int NB_CAS = 20000;
+	/** La premire graine par dfaut */
+	private static final long GRAINE = 2010;
+	/** Le nombre d'entres par cas par dfaut */
+	private static final int NB_ENTREES = 3000;
+	/** Le nombre de cas traits par une tche */
+	private static final int TAILLE_LOT = 64;
+	/** Les caractres reprsentant chaque entre dans les reproductions */
+	private static final String ENTREES = ".GDHAC";
+	/** Les caractres reprsentant chaque couleur de puyo, comme dans CodecPlateau */
+	private static final String LETTRES = "MRVN";
+	
+	/**
+	 * Interface que doit implmenter un moteur candidat pour tre compar
+	 * au moteur de rfrence. Un candidat ne connat que les puyos poss,
+	 * les pices lui sont transmises puyo par puyo une fois poses.
+	 */
+	public interface Candidat
+	{
+		/**
+		 * Permet de lcher un puyo de la couleur indique dans la colonne j.
+		 * @param j la colonne considre.
+		 * @param couleur l'indice de la couleur du puyo.
+		 * @return la ligne d'arrive du puyo ou Plateau.PERDU si le jeu est perdu.
+		 */
+		int lacher(int j, int couleur);
+		
+		/**
+		 * Permet de dtruire les blocs d'au moins 4 puyos.
+		 * @return le score brut rapport par les destructions, 0 si aucune.
+		 */
+		int detruireBlocs();
+		
+		/**
+		 * Permet d'appliquer la gravit aux puyos.
+		 */
+		void faireChuterPuyos();
+		
+		/**
+		 * Retourne l'indice de la couleur du puyo de la case (i,j) ou -1 si
+		 * la case est vide.
+		 * @param i la ligne considre.
+		 * @param j la colonne considre.
+		 * @return l'indice de la couleur ou -1.
+		 */
+		int getCouleur(int i, int j);
+	}
+	
+	/**
+	 * Classe adaptant PlateauBinaire  l'interface des moteurs candidats.
+	 */
+	private static class CandidatBinaire implements Candidat
+	{
+		/** Le plateau binaire compar */
+		private PlateauBinaire plateau = new PlateauBinaire();
+		
+		public int lacher(int j, int couleur)
+		{
+			return plateau.lacher(j, couleur);
+		}
+		
+		public int detruireBlocs()
+		{
+			return plateau.detruireBlocs();
+		}
+		
+		public void faireChuterPuyos()
+		{
+			plateau.faireChuterPuyos();
+		}
+		
+		public int getCouleur(int i, int j)
+		{
+			return plateau.getCouleur(i, j);
+		}
+	}
+	
+	/**
+	 * Classe reprsentant le rsultat de l'excution d'un cas de test.
+	 */
+	private static class Execution
+	{
+		/** Le nombre d'tapes effectues */
+		int nbEtapes;
+		/** Le nombre de pices poses */
+		int nbPieces;
+		/** Le nombre de destructions effectues */
+		int nbDestructions;
+		/** L'tape  laquelle les moteurs ont diverg ou -1 */
+		int divergence = -1;
+		/** La description de la divergence */
+		String description;
+		/** Le plateau de rfrence au moment de la divergence */
+		String plateauReference;
+		/** Le plateau candidat au moment de la divergence */
+		String plateauCandidat;
+	}
+	
+	/**
+	 * Classe reprsentant un cas de test en chec.
+	 */
+	private static class Echec
+	{
+		/** La graine du cas */
+		long graine;
+		/** Les entres du cas */
+		int[] entrees;
+	}
+	
+	/**
+	 * Retourne un nouveau moteur candidat, vide.
+	 * @return le moteur candidat.
+	 */
+	private static Candidat creerCandidat()
+	{
+		return new CandidatBinaire();
+	}
+	
+	/**
+	 * Mthode principale, lance les comparaisons.
+	 * @param args les arguments de la ligne de commande.
+	 */
+	public static void main(String[] args) throws InterruptedException, ExecutionException
+	{
+		final int nbCas = args.length > 0 ? Integer.parseInt(args[0]) : NB_CAS;
+		final long graine = args.length > 1 ? Long.parseLong(args[1]) : GRAINE;
+		final int nbEntrees = args.length > 2 ? Integer.parseInt(args[2]) : NB_ENTREES;
+		final AtomicLong nbEtapes = new AtomicLong(), nbPieces = new AtomicLong(), nbDestructions = new AtomicLong();
+		int nbThreads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executeur = Executors.newFixedThreadPool(nbThreads);
+		List<Future<Echec>> lots = new ArrayList<Future<Echec>>();
+		Echec echec = null;
+		long debut = System.nanoTime();
+		
+		for (int premier=0; premier<nbCas; premier+=TAILLE_LOT)
+		{
+			final int debutLot = premier, finLot = Math.min(nbCas, premier + TAILLE_LOT);
+			
+			lots.add(executeur.submit(new Callable<Echec>()
+			{
+				public Echec call()
+				{
+					Execution execution;
+					Echec echec;
+					
+					for (int n=debutLot; n<finLot; n++)
+					{
+						echec = new Echec();
+						echec.graine = graine + n;
+						echec.entrees = tirerEntrees(echec.graine, nbEntrees);
+						execution = executer(echec.graine, echec.entrees);
+						
+						nbEtapes.addAndGet(execution.nbEtapes);
+						nbPieces.addAndGet(execution.nbPieces);
+						nbDestructions.addAndGet(execution.nbDestructions);
+						
+						if (execution.divergence >= 0)
+							return echec;
+					}
+					
+					return null;
+				}
+			}));
+		}
+		
+		// Les lots sont examins dans l'ordre des graines : le premier chec trouv est celui
+		// de plus petite graine, quel que soit l'ordonnancement des threads.
+		for (int n=0; n<lots.size() && echec == null; n++)
+			echec = lots.get(n).get();
+		
+		for (Future<Echec> lot : lots) // On abandonne les lots restants
+			lot.cancel(false);
+		executeur.shutdown();
+		
+		System.out.println(nbCas + " cas sur " + nbThreads + " threads en " + (System.nanoTime() - debut) / 1000000 + " ms : "
+				+ nbEtapes + " tapes, " + nbPieces + " pices, " + nbDestructions + " destructions");
+		
+		if (echec == null)
+		{
+			System.out.println("Aucune divergence");
+			return;
+		}
+		
+		int[] reduites = reduire(echec.graine, echec.entrees);
+		Execution execution = executer(echec.graine, reduites);
+		
+		System.out.println("Divergence pour la graine " + echec.graine + " (" + echec.entrees.length + " entres rduites  " + reduites.length + ")");
+		System.out.println("Entres : " + ecrireEntrees(reduites));
+		System.out.println("Etape " + execution.divergence + " : " + execution.description);
+		System.out.println("Rfrence :\n" + execution.plateauReference);
+		System.out.println("Candidat :\n" + execution.plateauCandidat);
+		System.exit(1);
+	}
+	
+	/**
+	 * Retourne une suite d'entres tire  partir de la graine fournie,
+	 * l'absence d'action tant plus frquente que les autres entres.
+	 * @param graine la graine du cas de test.
+	 * @param nbEntrees le nombre d'entres  tirer.
+	 * @return la suite d'entres.
+	 */
+	private static int[] tirerEntrees(long graine, int nbEntrees)
+	{
+		Generateur generateur = new Generateur(~graine);
+		int[] entrees = new int[nbEntrees];
+		
+		for (int n=0; n<nbEntrees; n++)
+		{
+			entrees[n] = generateur.entier(ENTREES.length() + 3);
+			if (entrees[n] >= ENTREES.length())
+				entrees[n] = MoteurJeu.AUCUNE;
+		}
+		
+		return entrees;
+	}
+	
+	/**
+	 * Permet d'excuter un cas de test : la partie de graine fournie est joue
+	 * avec les entres indiques par le moteur de rfrence et reproduite par
+	 * le moteur candidat jusqu' la fin des entres, la dfaite ou la
+	 * premire divergence.
+	 * @param graine la graine de la partie.
+	 * @param entrees les entres  appliquer.
+	 * @return le rsultat de l'excution.
+	 */
+	private static Execution executer(long graine, int[] entrees)
+	{
+		Execution execution = new Execution();
+		MoteurJeu moteur = new MoteurJeu();
+		Partie partie = new Partie(Plateau.LARGEUR, Plateau.HAUTEUR, new Generateur(graine));
+		Partie fantome = new Partie(); // Calcule le score du candidat
+		Candidat candidat = creerCandidat();
+		int[] lignes = new int[Piece.NB_MAX_PUYOS], colonnes = new int[Piece.NB_MAX_PUYOS], couleurs = new int[Piece.NB_MAX_PUYOS];
+		int nbPuyos = 0, phase, score, s, t, tmp;
+		boolean perduCandidat;
+		ResultatEtape resultat;
+		Piece piece;
+		
+		moteur.commencer(partie);
+		
+		for (int n=0; n<entrees.length; n++)
+		{
+			phase = partie.getPhase();
+			
+			if (phase == MoteurJeu.CHUTE) // On mmorise la pice avant l'tape, elle est vide lorsqu'elle se pose
+			{
+				piece = partie.getPieceCourante();
+				nbPuyos = piece.getNbPuyos();
+				
+				for (s=0; s<nbPuyos; s++)
+				{
+					lignes[s] = piece.getLigne(s);
+					colonnes[s] = piece.getColonne(s);
+					couleurs[s] = piece.getPuyo(s).getIndiceCouleur();
+				}
+			}
+			
+			resultat = moteur.etape(partie, entrees[n]);
+			execution.nbEtapes++;
+			
+			switch (phase)
+			{
+				case MoteurJeu.CHUTE:
+					if (!resultat.estPosee() && !resultat.estPerdu())
+						break;
+					
+					// Les puyos sont lchs de bas en haut pour s'empiler comme dans la pice
+					for (s=0; s<nbPuyos; s++)
+					{
+						for (t=s+1; t<nbPuyos; t++)
+						{
+							if (lignes[t] > lignes[s])
+							{
+								tmp = lignes[s]; lignes[s] = lignes[t]; lignes[t] = tmp;
+								tmp = colonnes[s]; colonnes[s] = colonnes[t]; colonnes[t] = tmp;
+								tmp = couleurs[s]; couleurs[s] = couleurs[t]; couleurs[t] = tmp;
+							}
+						}
+					}
+					
+					perduCandidat = false;
+					for (s=0; s<nbPuyos; s++)
+						perduCandidat |= candidat.lacher(colonnes[s], couleurs[s]) == Plateau.PERDU;
+					execution.nbPieces++;
+					
+					if (perduCandidat != resultat.estPerdu())
+						return diverger(execution, n, "dfaite " + resultat.estPerdu() + " / " + perduCandidat, partie, candidat);
+					if (resultat.estPerdu())
+						return execution;
+					break;
+				case MoteurJeu.DESTRUCTION:
+					score = candidat.detruireBlocs();
+					
+					if (score != 0)
+					{
+						fantome.ajoutCombo();
+						fantome.ajoutScore(score);
+						execution.nbDestructions++;
+					}
+					else
+						fantome.resetCombo();
+					
+					if (partie.getScore() != fantome.getScore() || partie.getCombo() != fantome.getCombo())
+						return diverger(execution, n, "score " + partie.getScore() + " / " + fantome.getScore()
+								+ ", enchanements " + partie.getCombo() + " / " + fantome.getCombo(), partie, candidat);
+					break;
+				case MoteurJeu.GRAVITE:
+					candidat.faireChuterPuyos();
+					break;
+			}
+			
+			if (!comparer(partie, candidat))
+				return diverger(execution, n, "plateaux diffrents", partie, candidat);
+		}
+		
+		return execution;
+	}
+	
+	/**
+	 * Retourne vrai si les puyos poss du plateau de rfrence sont les mmes
+	 * que ceux du candidat, les puyos de la pice en chute tant ignors.
+	 * @param partie la partie de rfrence.
+	 * @param candidat le moteur candidat.
+	 * @return un boolen indiquant si les plateaux sont identiques.
+	 */
+	private static boolean comparer(Partie partie, Candidat candidat)
+	{
+		Plateau plateau = partie.getPlateau();
+		
+		for (int i=0; i<plateau.getHauteur(); i++)
+		{
+			for (int j=0; j<plateau.getLargeur(); j++)
+			{
+				if (couleurReference(partie, i, j) != candidat.getCouleur(i, j))
+					return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Retourne l'indice de la couleur du puyo pos de la case (i,j) du plateau
+	 * de rfrence ou -1 si la case est vide ou occupe par la pice en chute.
+	 * @param partie la partie de rfrence.
+	 * @param i la ligne considre.
+	 * @param j la colonne considre.
+	 * @return l'indice de la couleur ou -1.
+	 */
+	private static int couleurReference(Partie partie, int i, int j)
+	{
+		Plateau plateau = partie.getPlateau();
+		
+		if (plateau.estLibre(i, j) || (partie.getPhase() == MoteurJeu.CHUTE && partie.getPieceCourante().chercher(i, j) >= 0))
+			return -1;
+		
+		return plateau.getIndiceCouleurPuyo(i, j);
+	}
+	
+	/**
+	 * Permet d'enregistrer une divergence dans le rsultat de l'excution.
+	 * @param execution le rsultat de l'excution.
+	 * @param etape l'tape  laquelle les moteurs ont diverg.
+	 * @param description la description de la divergence.
+	 * @param partie la partie de rfrence.
+	 * @param candidat le moteur candidat.
+	 * @return le rsultat de l'excution.
+	 */
+	private static Execution diverger(Execution execution, int etape, String description, Partie partie, Candidat candidat)
+	{
+		Plateau plateau = partie.getPlateau();
+		StringBuilder texte = new StringBuilder();
+		int couleur;
+		
+		for (int i=0; i<plateau.getHauteur(); i++)
+		{
+			for (int j=0; j<plateau.getLargeur(); j++)
+			{
+				couleur = candidat.getCouleur(i, j);
+				texte.append(couleur < 0 ? '.' : LETTRES.charAt(couleur));
+			}
+			texte.append('\n');
+		}
+		
+		execution.divergence = etape;
+		execution.description = description;
+		execution.plateauReference = CodecPlateau.ecrireTexte(plateau);
+		execution.plateauCandidat = texte.toString();
+		
+		return execution;
+	}
+	
+	/**
+	 * Retourne une suite d'entres rduite provoquant toujours une divergence
+	 * pour la graine fournie : les entres suivant la divergence sont
+	 * supprimes, puis des tranches de taille dcroissante sont supprimes et
+	 * enfin chaque entre restante est remplace par AUCUNE, chaque
+	 * modification n'tant conserve que si la divergence persiste.
+	 * @param graine la graine du cas en chec.
+	 * @param entrees les entres du cas en chec.
+	 * @return la suite d'entres rduite.
+	 */
+	private static int[] reduire(long graine, int[] entrees)
+	{
+		int[] essai;
+		int divergence;
+		
+		entrees = tronquer(entrees, executer(graine, entrees).divergence + 1);
+		
+		for (int tranche=entrees.length/2; tranche>0; tranche/=2)
+		{
+			// Les tranches sont parcourues depuis la fin pour que les suppressions ne dcalent pas les tranches restantes
+			for (int debut=entrees.length-tranche; debut>=0; debut-=tranche)
+			{
+				essai = new int[entrees.length - tranche];
+				System.arraycopy(entrees, 0, essai, 0, debut);
+				System.arraycopy(entrees, debut + tranche, essai, debut, essai.length - debut);
+				divergence = executer(graine, essai).divergence;
+				
+				if (divergence >= 0)
+				{
+					entrees = tronquer(essai, divergence + 1);
+					debut = Math.min(debut, entrees.length);
+				}
+			}
+		}
+		
+		for (int n=0; n<entrees.length; n++)
+		{
+			if (entrees[n] != MoteurJeu.AUCUNE)
+			{
+				essai = entrees.clone();
+				essai[n] = MoteurJeu.AUCUNE;
+				
+				if (executer(graine, essai).divergence >= 0)
+					entrees = essai;
+			}
+		}
+		
+		return entrees;
+	}
+	
+	/**
+	 * Retourne les longueur premires entres de la suite fournie.
+	 * @param entrees la suite d'entres.
+	 * @param longueur le nombre d'entres  conserver.
+	 * @return la suite tronque.
+	 */
+	private static int[] tronquer(int[] entrees, int longueur)
+	{
+		int[] tronquees = new int[longueur];
+		System.arraycopy(entrees, 0, tronquees, 0, longueur);
+		
+		return tronquees;
+	}
+	
+	/**
+	 * Retourne une chaine reprsentant la suite d'entres fournie,  raison
+	 * d'un caractre par entre : '.' (AUCUNE), 'G' (GAUCHE), 'D' (DROITE),
+	 * 'H' (HORAIRE), 'A' (ANTIHORAIRE) et 'C' (CHUTE_RAPIDE).
+	 * @param entrees la suite d'entres.
+	 * @return la chaine reprsentant les entres.
+	 */
+	private static String ecrireEntrees(int[] entrees)
+	{
+		StringBuilder texte = new StringBuilder(entrees.length);
+		
+		for (int n=0; n<entrees.length; n++)
+			texte.append(ENTREES.charAt(entrees[n]));
+		
+		return texte.toString();
+	}
+}
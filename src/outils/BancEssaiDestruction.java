@@ -0,0 +1,217 @@
+package outils;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Random;
+
+import moteur.Generateur;
+import moteur.Piece;
+import moteur.Plateau;
+import moteur.Puyo;
+
+/**
+ * Programme de mesure des performances de la passe de destruction des blocs.
+ * Des plateaux encombrs sont construits en faisant tomber des pices sans
+ * jamais dtruire de blocs, puis une passe de destruction complte est
+ * effectue de nombreuses fois sur chacun d'eux, d'une part avec
+ * Plateau.detruireBlocs et d'autre part avec l'ancienne mthode (parcours
+ * rcursif stockant les points du bloc dans une liste) reproduite ici.
+ * Le temps moyen d'une passe est affich pour chaque mthode ainsi que le
+ * gain obtenu.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class BancEssaiDestruction
+{
+	/** Le nombre de plateaux diffrents utiliss pour la mesure */
+	private static final int NB_PLATEAUX = 64;
+	/** Le nombre de passes de destruction effectues sur chaque plateau  chaque tour */
+	private static final int NB_PASSES = 2000;
+	/** Le nombre de tours de mesure, le premier servant uniquement  la mise en route */
+	private static final int NB_TOURS = 6;
+	
+	/**
+	 * Mthode principale, lance la mesure. Un premier argument facultatif
+	 * permet de fixer la graine du gnrateur utilis pour tirer et dplacer les pices.
+	 * @param args les arguments de la ligne de commande.
+	 */
+	public static void main(String[] args)
+	{
+		Random rand = new Random(args.length > 0 ? Long.parseLong(args[0]) : 2010);
+		Plateau[] plateaux = new Plateau[NB_PLATEAUX];
+		Puyo[][][] grilles = new Puyo[NB_PLATEAUX][][];
+		Plateau travail = new Plateau();
+		long dureeNouvelle = 0, dureeAncienne = 0, debut;
+		int scoreNouveau = 0, scoreAncien = 0;
+		
+		for (int n=0; n<NB_PLATEAUX; n++)
+		{
+			plateaux[n] = remplir(rand);
+			grilles[n] = grille(plateaux[n]);
+		}
+		
+		for (int tour=0; tour<NB_TOURS; tour++)
+		{
+			for (int n=0; n<NB_PLATEAUX; n++)
+			{
+				debut = System.nanoTime();
+				for (int p=0; p<NB_PASSES; p++)
+				{
+					travail.copier(plateaux[n]);
+					scoreNouveau += travail.detruireBlocs();
+				}
+				if (tour > 0)
+					dureeNouvelle += System.nanoTime() - debut;
+				
+				debut = System.nanoTime();
+				for (int p=0; p<NB_PASSES; p++)
+				{
+					scoreAncien += detruireBlocsAncien(copie(grilles[n]));
+				}
+				if (tour > 0)
+					dureeAncienne += System.nanoTime() - debut;
+			}
+		}
+		
+		if (scoreNouveau != scoreAncien)
+			throw new IllegalStateException("Les deux mthodes ne donnent pas le mme score : " + scoreNouveau + " / " + scoreAncien);
+		
+		long nbPasses = (long) (NB_TOURS - 1) * NB_PLATEAUX * NB_PASSES;
+		System.out.println("Passe de destruction (ancienne mthode) : " + dureeAncienne / nbPasses + " ns");
+		System.out.println("Passe de destruction (Plateau.detruireBlocs) : " + dureeNouvelle / nbPasses + " ns");
+		System.out.println("Gain : x" + (dureeAncienne * 10 / dureeNouvelle) / 10.0);
+	}
+	
+	/**
+	 * Construit un plateau encombr en faisant tomber des pices  des positions
+	 * alatoires sans dtruire de blocs, jusqu' ce que la zone de jeu soit
+	 * presque pleine. Si une pice fait perdre la partie, le plateau retourn
+	 * est celui obtenu avant l'ajout de cette pice, il ne contient donc que
+	 * des puyos poss.
+	 * @param rand le gnrateur utilis pour tirer et dplacer les pices.
+	 * @return le plateau construit.
+	 */
+	static Plateau remplir(Random rand)
+	{
+		Plateau plateau = new Plateau(), precedent = new Plateau();
+		Generateur generateur = new Generateur(rand.nextLong());
+		Piece piece;
+		int ret;
+		
+		while (plateau.estLibre(5, 0) && plateau.estLibre(5, Plateau.LARGEUR-1) && plateau.estLibre(5, 2))
+		{
+			precedent.copier(plateau);
+			piece = new Piece(generateur);
+			plateau.ajouter(piece);
+			
+			for (int t=0; t<3; t++) // On fait entrer la pice dans la zone de jeu
+				plateau.translationVerticale(piece);
+			
+			for (int r=rand.nextInt(4); r>0 && !piece.estCassee(); r--)
+				plateau.rotation(Plateau.HORAIRE, piece);
+			
+			int deplacement = rand.nextInt(Plateau.LARGEUR) - 2;
+			for (int d=Math.abs(deplacement); d>0 && !piece.estCassee(); d--)
+				plateau.translationHorizontale(deplacement < 0 ? Plateau.GAUCHE : Plateau.DROITE, piece);
+			
+			do
+			{
+				ret = plateau.translationVerticale(piece);
+			} while (ret == Plateau.PIECE_NON_VIDE);
+			
+			if (ret == Plateau.PERDU)
+				return precedent;
+		}
+		
+		return plateau;
+	}
+	
+	/**
+	 * Retourne une grille de puyos correspondant au plateau fourni, telle
+	 * que l'utilisait l'ancienne reprsentation du plateau.
+	 * @param plateau le plateau  convertir.
+	 * @return la grille de puyos correspondante.
+	 */
+	static Puyo[][] grille(Plateau plateau)
+	{
+		Puyo[][] grille = new Puyo[Plateau.HAUTEUR][Plateau.LARGEUR];
+		
+		for (int i=0; i<Plateau.HAUTEUR; i++)
+		{
+			for (int j=0; j<Plateau.LARGEUR; j++)
+				grille[i][j] = plateau.getPuyo(i, j);
+		}
+		
+		return grille;
+	}
+	
+	/**
+	 * Retourne une copie de la grille fournie.
+	 * @param grille la grille  copier.
+	 * @return une copie de la grille.
+	 */
+	static Puyo[][] copie(Puyo[][] grille)
+	{
+		Puyo[][] copie = new Puyo[grille.length][];
+		
+		for (int i=0; i<grille.length; i++)
+			copie[i] = grille[i].clone();
+		
+		return copie;
+	}
+	
+	/**
+	 * Ancienne mthode de destruction des blocs, tous les puyos de la zone
+	 * visible tant considrs comme dernirement placs.
+	 * @param grille la grille de puyos.
+	 * @return le score rapport par les destructions effectues.
+	 */
+	private static int detruireBlocsAncien(Puyo[][] grille)
+	{
+		int score = 0;
+		
+		for (int i=3; i<Plateau.HAUTEUR; i++)
+		{
+			for (int j=0; j<Plateau.LARGEUR; j++)
+			{
+				if (grille[i][j] != null)
+				{
+					ArrayList<Point> listePointsBloc = new ArrayList<Point>();
+					parcoursBlocAncien(grille, grille[i][j], i, j, listePointsBloc);
+					
+					if (listePointsBloc.size() >= 4)
+					{
+						score += 100 + (listePointsBloc.size()-4)*10;
+						for (Point p : listePointsBloc)
+							grille[p.x][p.y] = null;
+					}
+				}
+			}
+		}
+		
+		return score;
+	}
+	
+	/**
+	 * Ancienne mthode de parcours rcursif d'un bloc.
+	 * @param grille la grille de puyos.
+	 * @param puyo un puyo de la couleur du bloc recherch.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 * @param listePointsBloc la liste contenant les points du bloc.
+	 */
+	private static void parcoursBlocAncien(Puyo[][] grille, Puyo puyo, int i, int j, ArrayList<Point> listePointsBloc)
+	{
+		if (i >= 3 && i < Plateau.HAUTEUR && j >= 0 && j < Plateau.LARGEUR
+				&& !listePointsBloc.contains(new Point(i, j))
+				&& grille[i][j] != null
+				&& grille[i][j].getCouleur().equals(puyo.getCouleur()))
+		{
+			listePointsBloc.add(new Point(i, j));
+			parcoursBlocAncien(grille, puyo, i+1, j, listePointsBloc);
+			parcoursBlocAncien(grille, puyo, i-1, j, listePointsBloc);
+			parcoursBlocAncien(grille, puyo, i, j+1, listePointsBloc);
+			parcoursBlocAncien(grille, puyo, i, j-1, listePointsBloc);
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package outils;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Random;
+
+import moteur.CodecPlateau;
+import moteur.Plateau;
+import moteur.Puyo;
+
+/**
+ * Programme de mesure des performances de l'application de la gravit.
+ * Des plateaux encombrs sont construits comme pour la mesure de la passe
+ * de destruction, puis trous par une passe de destruction des blocs.
+ * La gravit est ensuite applique de nombreuses fois sur chacun d'eux,
+ * d'une part avec Plateau.faireChuterPuyos et d'autre part avec l'ancienne
+ * mthode (descente case par case, mise  jour des liens et mmorisation des
+ * puyos dplacs dans une liste) reproduite ici, les liens tant stocks 
+ * part puisque les puyos des grilles sont partags.
+ * Le temps moyen d'une application est affich pour chaque mthode ainsi
+ * que le gain obtenu. Au pralable, la gravit est applique  un plateau
+ * reconstruit avec sa pice en chute, dont les puyos doivent rester en place.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class BancEssaiGravite
+{
+	/** Le nombre de plateaux diffrents utiliss pour la mesure */
+	private static final int NB_PLATEAUX = 64;
+	/** Le nombre d'applications de la gravit effectues sur chaque plateau  chaque tour */
+	private static final int NB_PASSES = 2000;
+	/** Le nombre de tours de mesure, le premier servant uniquement  la mise en route */
+	private static final int NB_TOURS = 6;
+	/** Plateau trou contenant une pice casse en chute (en minuscules), dont un puyo se trouve sous un puyo pos */
+	private static final String PLATEAU_PIECE_EN_CHUTE = "6x15\n......\n......\n......\n......\n......\n"
+			+ "......\n......\n......\n......\n......\n......\nrRV...\nN.....\n.vm...\nM.N...\n";
+	/** Le plateau attendu aprs application de la gravit au plateau prcdent */
+	private static final String PLATEAU_PIECE_EN_CHUTE_APRES = "6x15\n......\n......\n......\n......\n......\n"
+			+ "......\n......\n......\n......\n......\n......\nr.....\n..V...\nNvm...\nMRN...\n";
+	
+	/**
+	 * Mthode principale, lance la mesure. Un premier argument facultatif
+	 * permet de fixer la graine du gnrateur utilis pour dplacer les pices.
+	 * @param args les arguments de la ligne de commande.
+	 */
+	public static void main(String[] args)
+	{
+		Random rand = new Random(args.length > 0 ? Long.parseLong(args[0]) : 2010);
+		Plateau[] plateaux = new Plateau[NB_PLATEAUX];
+		Puyo[][][] grilles = new Puyo[NB_PLATEAUX][][];
+		Plateau travail = new Plateau();
+		Puyo[][] grilleTravail = null;
+		byte[][] liens = new byte[Plateau.HAUTEUR][Plateau.LARGEUR];
+		long dureeNouvelle = 0, dureeAncienne = 0, debut;
+		
+		verifierPieceEnChute();
+		
+		for (int n=0; n<NB_PLATEAUX; n++)
+		{
+			plateaux[n] = BancEssaiDestruction.remplir(rand);
+			plateaux[n].detruireBlocs();
+			grilles[n] = BancEssaiDestruction.grille(plateaux[n]);
+		}
+		
+		for (int tour=0; tour<NB_TOURS; tour++)
+		{
+			for (int n=0; n<NB_PLATEAUX; n++)
+			{
+				debut = System.nanoTime();
+				for (int p=0; p<NB_PASSES; p++)
+				{
+					travail.copier(plateaux[n]);
+					travail.faireChuterPuyos();
+				}
+				if (tour > 0)
+					dureeNouvelle += System.nanoTime() - debut;
+				
+				debut = System.nanoTime();
+				for (int p=0; p<NB_PASSES; p++)
+				{
+					grilleTravail = BancEssaiDestruction.copie(grilles[n]);
+					faireChuterPuyosAncien(grilleTravail, liens);
+				}
+				if (tour > 0)
+					dureeAncienne += System.nanoTime() - debut;
+				
+				verifier(travail, grilleTravail);
+			}
+		}
+		
+		long nbPasses = (long) (NB_TOURS - 1) * NB_PLATEAUX * NB_PASSES;
+		System.out.println("Application de la gravit (ancienne mthode) : " + dureeAncienne / nbPasses + " ns");
+		System.out.println("Application de la gravit (Plateau.faireChuterPuyos) : " + dureeNouvelle / nbPasses + " ns");
+		System.out.println("Gain : x" + (dureeAncienne * 10 / dureeNouvelle) / 10.0);
+	}
+	
+	/**
+	 * Vrifie que le plateau et la grille fournis contiennent les mmes puyos.
+	 * @param plateau le plateau obtenu avec Plateau.faireChuterPuyos.
+	 * @param grille la grille obtenue avec l'ancienne mthode.
+	 */
+	private static void verifier(Plateau plateau, Puyo[][] grille)
+	{
+		for (int i=0; i<Plateau.HAUTEUR; i++)
+		{
+			for (int j=0; j<Plateau.LARGEUR; j++)
+			{
+				if (plateau.estLibre(i, j) != (grille[i][j] == null)
+						|| (grille[i][j] != null && plateau.getIndiceCouleurPuyo(i, j) != grille[i][j].getIndiceCouleur()))
+					throw new IllegalStateException("Les deux mthodes ne donnent pas le mme plateau en (" + i + ", " + j + ")");
+			}
+		}
+	}
+	
+	/**
+	 * Vrifie que l'application de la gravit  un plateau reconstruit avec
+	 * sa pice en chute ne fait tomber que les puyos poss : les puyos de la
+	 * pice restent en place et ne sont pas pris pour des trous, y compris
+	 * lorsqu'un puyo pos se trouve au-dessus de l'un d'eux.
+	 */
+	private static void verifierPieceEnChute()
+	{
+		Plateau plateau = CodecPlateau.lireTexte(PLATEAU_PIECE_EN_CHUTE);
+		long colonnes = plateau.faireChuterPuyos();
+		
+		if (colonnes != 0x7 || !CodecPlateau.ecrireTexte(plateau).equals(PLATEAU_PIECE_EN_CHUTE_APRES))
+			throw new IllegalStateException("Gravit incorrecte sur un plateau avec une pice en chute (colonnes "
+					+ Long.toBinaryString(colonnes) + ") :\n" + CodecPlateau.ecrireTexte(plateau));
+	}
+	
+	/**
+	 * Ancienne mthode d'application de la gravit : chaque puyo descend case
+	 * par case, ses liens et ceux de son ancien voisin de gauche sont recrs
+	 * et ses coordonnes sont ajoutes  la liste des derniers puyos.
+	 * @param grille la grille de puyos.
+	 * @param liens les liens des puyos de la grille.
+	 * @return la liste des puyos dplacs.
+	 */
+	private static ArrayList<Point> faireChuterPuyosAncien(Puyo[][] grille, byte[][] liens)
+	{
+		ArrayList<Point> derniersPuyos = new ArrayList<Point>();
+		int di;
+		
+		for (int i=Plateau.HAUTEUR-2; i>=3; i--)
+		{
+			for (int j=0; j<Plateau.LARGEUR; j++)
+			{
+				if (grille[i][j] != null)
+				{
+					di = 1;
+					
+					while (i+di < Plateau.HAUTEUR && grille[i+di][j] == null)
+					{
+						grille[i+di][j] = grille[i+di-1][j];
+						grille[i+di-1][j] = null;
+						liens[i+di][j] = liens[i+di-1][j];
+						di++;
+					}
+					
+					if (di > 1)
+					{
+						derniersPuyos.add(new Point(i+di-1, j));
+						creerLiensAncien(grille, liens, i+di-1, j);
+						if (j > 0 && grille[i][j-1] != null)
+							creerLiensAncien(grille, liens, i, j-1);
+					}
+				}
+			}
+		}
+		
+		return derniersPuyos;
+	}
+	
+	/**
+	 * Ancienne mthode de cration des liens du puyo situ en (i,j).
+	 * @param grille la grille de puyos.
+	 * @param liens les liens des puyos de la grille.
+	 * @param i la coordonne dsignant la ligne considre.
+	 * @param j la coordonne dsignant la colonne considre.
+	 */
+	private static void creerLiensAncien(Puyo[][] grille, byte[][] liens, int i, int j)
+	{
+		if (i > 2)
+		{
+			if (i-1 > 3)
+				liens[i][j] = lier(liens[i][j], Puyo.HAUT, grille[i][j].equals(grille[i-1][j]));
+			if (i+1 < Plateau.HAUTEUR && grille[i+1][j] != null)
+				liens[i+1][j] = lier(liens[i+1][j], Puyo.HAUT, grille[i][j].equals(grille[i+1][j]));
+			if (j+1 < Plateau.LARGEUR)
+				liens[i][j] = lier(liens[i][j], Puyo.DROITE, grille[i][j].equals(grille[i][j+1]));
+			if (j-1 >= 0 && grille[i][j-1] != null)
+				liens[i][j-1] = lier(liens[i][j-1], Puyo.DROITE, grille[i][j].equals(grille[i][j-1]));
+		}
+	}
+	
+	/**
+	 * Retourne les liens fournis aprs avoir indiqu la prsence ou non du lien dsign.
+	 * @param liens les liens d'un puyo.
+	 * @param lien l'indice correspondant au lien.
+	 * @param existe un booleen indiquant si le lien existe ou non.
+	 * @return les liens modifis.
+	 */
+	private static byte lier(byte liens, int lien, boolean existe)
+	{
+		return (byte) (existe ? liens | (1 << lien) : liens & ~(1 << lien));
+	}
+}
@@ -0,0 +1,162 @@
+package outils;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import moteur.CodecPlateau;
+import moteur.Historique;
+import moteur.Instantane;
+import moteur.MoteurJeu;
+import moteur.Partie;
+import moteur.Plateau;
+
+/**
+ * Programme de test de l'historique des plateaux. Des parties sont joues
+ * au hasard, l'tat du plateau tant enregistr  l'apparition de chaque
+ * pice comme le fait le contrleur de jeu, puis  la fin de la partie.
+ * On parcourt ensuite l'historique en restaurant chaque tat dans le
+ * plateau de la partie :
+ * - aprs chaque annulation, enregistrer le plateau restaur ne doit rien
+ *   enregistrer ni effacer les tats qui peuvent tre rtablis ;
+ * - chaque tat restaur doit redonner le plateau enregistr ;
+ * - aprs avoir tout rtabli, le plateau doit tre celui de la fin de partie ;
+ * - enfin, modifier le plateau aprs une annulation puis l'enregistrer doit
+ *   effacer les tats qui pouvaient tre rtablis.
+ * Arguments facultatifs : le nombre de parties et la premire graine.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class BancEssaiHistorique
+{
+	/** Le nombre de parties par dfaut */
+	private static final int NB_PARTIES = 200;
+	/** La premire graine par dfaut */
+	private static final long GRAINE = 2010;
+	/** Le nombre maximal de pices joues par partie */
+	private static final int NB_PIECES = 60;
+	
+	/**
+	 * Mthode principale, lance le test.
+	 * @param args les arguments de la ligne de commande.
+	 */
+	public static void main(String[] args)
+	{
+		int nbParties = args.length > 0 ? Integer.parseInt(args[0]) : NB_PARTIES;
+		long graine = args.length > 1 ? Long.parseLong(args[1]) : GRAINE;
+		Random rand = new Random(graine);
+		long nbEtats = 0;
+		
+		for (int n=0; n<nbParties; n++)
+			nbEtats += verifier(graine + n, rand);
+		
+		System.out.println(nbParties + " parties, " + nbEtats + " tats enregistrs : ok");
+	}
+	
+	/**
+	 * Joue une partie en enregistrant son historique puis vrifie le
+	 * parcours de l'historique.
+	 * @param graine la graine de la partie.
+	 * @param rand le gnrateur alatoire du joueur.
+	 * @return le nombre d'tats enregistrs.
+	 */
+	private static int verifier(long graine, Random rand)
+	{
+		MoteurJeu moteur = new MoteurJeu();
+		Partie partie = new Partie(graine);
+		Plateau plateau = partie.getPlateau();
+		ArrayList<String> textes = new ArrayList<String>();
+		Historique historique;
+		String fin;
+		int nbEtats, position;
+		
+		moteur.commencer(partie);
+		historique = new Historique(plateau);
+		textes.add(CodecPlateau.ecrireTexte(plateau));
+		
+		for (int p=0; p<NB_PIECES && jouerPiece(moteur, partie, rand); p++)
+		{
+			if (historique.enregistrer(plateau))
+				textes.add(CodecPlateau.ecrireTexte(plateau));
+		}
+		
+		fin = CodecPlateau.ecrireTexte(plateau); // Le plateau de fin de partie est galement enregistr.
+		if (historique.enregistrer(plateau))
+			textes.add(fin);
+		nbEtats = historique.getNbEtats();
+		if (nbEtats != textes.size())
+			throw new IllegalStateException("Partie " + graine + " : " + nbEtats + " tats au lieu de " + textes.size());
+		
+		while (historique.peutAnnuler()) // Annulation -> enregistrement
+		{
+			plateau.restaurer(historique.annuler());
+			verifierEtat(graine, plateau, textes.get(historique.getPosition()), historique.getEtatCourant(), "annulation");
+			
+			if (historique.enregistrer(plateau) || historique.getNbEtats() != nbEtats || !historique.peutRetablir())
+				throw new IllegalStateException("Partie " + graine + " : le plateau restaur a t enregistr  la position " + historique.getPosition());
+		}
+		
+		while (historique.peutRetablir()) // -> rtablissement
+		{
+			plateau.restaurer(historique.retablir());
+			verifierEtat(graine, plateau, textes.get(historique.getPosition()), historique.getEtatCourant(), "rtablissement");
+		}
+		verifierEtat(graine, plateau, fin, historique.getEtatCourant(), "fin de partie");
+		
+		if (nbEtats > 1) // Une modification aprs une annulation efface les tats suivants.
+		{
+			position = rand.nextInt(nbEtats - 1);
+			plateau.restaurer(historique.allerA(position));
+			plateau.copier(new Plateau(plateau.getLargeur(), plateau.getHauteur()));
+			
+			if (!historique.enregistrer(plateau) || historique.getNbEtats() != position + 2 || historique.peutRetablir())
+				throw new IllegalStateException("Partie " + graine + " : les tats suivant la position " + position + " n'ont pas t effacs");
+		}
+		
+		return nbEtats;
+	}
+	
+	/**
+	 * Vrifie que le plateau fourni correspond au texte attendu et que son
+	 * instantan est gal  l'tat courant de l'historique.
+	 * @param graine la graine de la partie.
+	 * @param plateau le plateau restaur.
+	 * @param attendu le plateau attendu sous sa forme texte.
+	 * @param courant l'tat courant de l'historique.
+	 * @param etape le nom de l'tape vrifie.
+	 */
+	private static void verifierEtat(long graine, Plateau plateau, String attendu, Instantane courant, String etape)
+	{
+		Instantane etat = plateau.getInstantane();
+		
+		if (!CodecPlateau.ecrireTexte(plateau).equals(attendu) || !etat.equals(courant) || etat.hashCode() != courant.hashCode())
+			throw new IllegalStateException("Partie " + graine + " : plateau restaur incorrect aprs " + etape + "\n" + CodecPlateau.ecrireTexte(plateau) + "au lieu de\n" + attendu);
+	}
+	
+	/**
+	 * Permet au joueur simul de jouer la pice courante : la pice descend
+	 * de quelques cases, est dplace au hasard puis chute directement, et
+	 * l'enchanement ventuel est effectu jusqu' l'apparition de la pice
+	 * suivante.
+	 * @param moteur le moteur de jeu.
+	 * @param partie la partie considre.
+	 * @param rand le gnrateur alatoire du joueur.
+	 * @return faux si la partie est perdue, vrai sinon.
+	 */
+	private static boolean jouerPiece(MoteurJeu moteur, Partie partie, Random rand)
+	{
+		for (int k=0; k<4; k++) // La pice ne peut tre dplace qu'une fois visible.
+			if (moteur.etape(partie, MoteurJeu.AUCUNE).estPerdu())
+				return false;
+		
+		for (int k=rand.nextInt(6); k>0; k--)
+			moteur.etape(partie, MoteurJeu.GAUCHE + rand.nextInt(4));
+		
+		if (moteur.etape(partie, MoteurJeu.CHUTE_RAPIDE).estPerdu())
+			return false;
+		
+		while (partie.getPhase() != MoteurJeu.CHUTE)
+			moteur.etape(partie, MoteurJeu.AUCUNE);
+		
+		return true;
+	}
+}
@@ -0,0 +1,217 @@
+package outils;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import moteur.CodecPlateau;
+import moteur.FilePieces;
+import moteur.Instantane;
+import moteur.MoteurJeu;
+import moteur.Partie;
+import moteur.TacheChute;
+
+/**
+ * Programme de test de la mise en pause d'une partie pendant un
+ * enchanement. Chaque essai commence une partie sur un plateau prpar
+ * contenant un enchanement de deux tapes, dclench ds que la premire
+ * pice est pose. La pice est lche directement, comme avec la touche
+ * espace, pendant qu'une tche de chute relle fait avancer la partie, qui
+ * est mise en pause au bout d'un dlai alatoire, le plus souvent au milieu
+ * de l'enchanement. On vrifie alors que :
+ * - le verrou du moteur peut tre pris presque immdiatement et que la
+ *   difficult peut tre augmente, comme avec la touche "+" ;
+ * - la partie n'avance plus pendant la pause ;
+ * - aprs la reprise, l'enchanement se termine et le plateau obtenu au
+ *   chargement de la pice suivante est celui d'une partie sans pause.
+ * Le nombre de pauses effectues dans chaque phase est affich  la fin.
+ * Arguments facultatifs : le nombre d'essais et la premire graine.
+ * @author Rmi Lacroix & Marie Nivet & Nicolas Poirier
+ *
+ */
+public class BancEssaiPause
+{
+	/** Le nombre d'essais par dfaut */
+	private static final int NB_ESSAIS = 40;
+	/** La premire graine par dfaut */
+	private static final long GRAINE = 2010;
+	/** Le dlai maximal en millisecondes pour obtenir le verrou du moteur pendant la pause */
+	private static final long ATTENTE_VERROU = 50;
+	/** Le dlai maximal en millisecondes pour terminer un enchanement aprs la reprise */
+	private static final long ATTENTE_ENCHAINEMENT = 5000;
+	/** Le plateau prpar : les rouges de droite sont dtruits, puis les verts */
+	private static final String PLATEAU =
+			"6x15\n" +
+			"......\n......\n......\n......\n......\n" +
+			"......\n......\n......\n......\n......\n" +
+			".....V\n" +
+			".....R\n" +
+			"....VR\n" +
+			"....VR\n" +
+			"....VR\n";
+	/** Le plateau de la partie en cours au chargement de la pice suivante, null avant */
+	private static volatile String plateauFinal;
+	
+	/**
+	 * Mthode principale, lance le test.
+	 * @param args les arguments de la ligne de commande.
+	 * @throws InterruptedException si le test est interrompu.
+	 */
+	public static void main(String[] args) throws InterruptedException
+	{
+		int nbEssais = args.length > 0 ? Integer.parseInt(args[0]) : NB_ESSAIS;
+		long graine = args.length > 1 ? Long.parseLong(args[1]) : GRAINE;
+		ScheduledExecutorService planificateur = Executors.newSingleThreadScheduledExecutor();
+		final MoteurJeu moteur = new MoteurJeu();
+		final Partie[] enCours = new Partie[1];
+		int[] pausesParPhase = new int[4];
+		Random rand = new Random(graine);
+		String attendu;
+		Partie partie;
+		
+		TacheChute tache = new TacheChute(planificateur, moteur, new TacheChute.Affichage() {
+			public void chargerPlateau(Instantane plateau)
+			{
+			}
+			
+			public void chargerPiecesSuivantes(FilePieces piecesSuivantes)
+			{ // Appele avec le verrou du moteur, juste aprs le chargement de la pice.
+				plateauFinal = CodecPlateau.ecrireTexte(enCours[0].getPlateau());
+			}
+			
+			public void terminerPartie(Partie partie)
+			{
+				throw new IllegalStateException("Partie perdue pendant l'essai");
+			}
+		});
+		
+		try
+		{
+			for (int n=0; n<nbEssais; n++)
+			{
+				attendu = jouerSansPause(graine + n);
+				
+				partie = preparer(graine + n);
+				plateauFinal = null;
+				synchronized (moteur)
+				{
+					enCours[0] = partie;
+					moteur.commencer(partie);
+				}
+				tache.demarrer(partie, 0);
+				moteur.etape(partie, MoteurJeu.CHUTE_RAPIDE);
+				
+				// La pose est suivie d'au plus une priode de chute puis de quatre tapes d'enchanement.
+				Thread.sleep(rand.nextInt((int) TacheChute.getPeriode(0) + 5 * (int) TacheChute.DELAI_ENCHAINEMENT));
+				
+				tache.arreter();
+				partie.mettreEnPause();
+				pausesParPhase[verifierPause(moteur, partie)]++;
+				partie.reprendrePartie();
+				tache.demarrer(partie, 0);
+				
+				attendreChargement();
+				tache.arreter();
+				
+				if (!attendu.equals(plateauFinal))
+					throw new IllegalStateException("Essai " + n + " : plateau obtenu aprs la pause\n" + plateauFinal + "au lieu de\n" + attendu);
+			}
+		} finally
+		{
+			planificateur.shutdownNow();
+		}
+		
+		System.out.println(nbEssais + " essais, pauses effectues :");
+		System.out.println(" - pendant la chute : " + pausesParPhase[MoteurJeu.CHUTE]);
+		System.out.println(" - avant une destruction : " + pausesParPhase[MoteurJeu.DESTRUCTION]);
+		System.out.println(" - avant une application de la gravit : " + pausesParPhase[MoteurJeu.GRAVITE]);
+	}
+	
+	/**
+	 * Cre une partie non commence sur le plateau prpar.
+	 * @param graine la graine de la partie.
+	 * @return la partie.
+	 */
+	private static Partie preparer(long graine)
+	{
+		Partie partie = new Partie(graine);
+		
+		partie.getPlateau().copier(CodecPlateau.lireTexte(PLATEAU));
+		
+		return partie;
+	}
+	
+	/**
+	 * Joue l'essai correspondant  la graine fournie sans tche de chute ni
+	 * pause, et retourne le plateau obtenu au chargement de la pice suivante.
+	 * @param graine la graine de la partie.
+	 * @return le plateau attendu, sous sa forme texte.
+	 */
+	private static String jouerSansPause(long graine)
+	{
+		MoteurJeu moteur = new MoteurJeu();
+		Partie partie = preparer(graine);
+		
+		moteur.commencer(partie);
+		moteur.etape(partie, MoteurJeu.CHUTE_RAPIDE);
+		while (!moteur.etape(partie, MoteurJeu.AUCUNE).estPieceChargee())
+			;
+		
+		return CodecPlateau.ecrireTexte(partie.getPlateau());
+	}
+	
+	/**
+	 * Vrifie qu'une partie mise en pause libre le verrou du moteur, accepte
+	 * une modification de la difficult et n'avance plus.
+	 * @param moteur le moteur de jeu.
+	 * @param partie la partie mise en pause.
+	 * @return la phase de la partie au moment de la pause.
+	 * @throws InterruptedException si le test est interrompu.
+	 */
+	private static int verifierPause(MoteurJeu moteur, Partie partie) throws InterruptedException
+	{
+		long debut = System.nanoTime(), attente;
+		int phase, score;
+		Instantane plateau;
+		
+		synchronized (moteur)
+		{
+			attente = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - debut);
+			phase = partie.getPhase();
+			score = partie.getScore();
+			plateau = partie.getPlateau().getInstantane();
+		}
+		
+		if (attente > ATTENTE_VERROU)
+			throw new IllegalStateException("Verrou du moteur gard " + attente + " ms pendant la pause (phase " + phase + ")");
+		
+		moteur.augmenterDifficulte(partie); // Comme la touche "+" pendant la pause
+		Thread.sleep(2 * TacheChute.DELAI_ENCHAINEMENT);
+		
+		synchronized (moteur)
+		{
+			if (partie.getPhase() != phase || partie.getScore() != score || partie.getPlateau().getInstantane() != plateau)
+				throw new IllegalStateException("La partie a avanc pendant la pause (phase " + phase + ")");
+		}
+		
+		return phase;
+	}
+	
+	/**
+	 * Attend que l'enchanement ventuellement interrompu se termine et que
+	 * la pice suivante soit charge.
+	 * @throws InterruptedException si le test est interrompu.
+	 */
+	private static void attendreChargement() throws InterruptedException
+	{
+		long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ATTENTE_ENCHAINEMENT);
+		
+		while (plateauFinal == null)
+		{
+			if (System.nanoTime() - limite > 0)
+				throw new IllegalStateException("L'enchanement n'a pas repris aprs la pause");
+			Thread.sleep(1);
+		}
+	}
+}